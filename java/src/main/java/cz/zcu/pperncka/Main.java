@@ -1,10 +1,12 @@
 package cz.zcu.pperncka;
 
 import com.beust.jcommander.JCommander;
+import com.beust.jcommander.ParameterException;
 import cz.zcu.pperncka.algorithm.Algorithm;
 import cz.zcu.pperncka.algorithm.ParallelAlgorithm;
 import cz.zcu.pperncka.data.Matrix;
 import cz.zcu.pperncka.data.Network;
+import cz.zcu.pperncka.io.BinaryFormat;
 import cz.zcu.pperncka.io.args.Args;
 import cz.zcu.pperncka.io.TNTPParser;
 import cz.zcu.pperncka.io.Writer;
@@ -24,27 +26,63 @@ public class Main {
 			return;
 		}
 		
+		// při zřetězení posouvá toky hlavní vlákno, ostatní režimy je posouvají ve vláknech
+		if (args.pipelined && args.workStealing)
+			throw new ParameterException("Parameters -pl and -ws cannot be used together.");
+		if (args.pipelined && args.concurrentShifting)
+			throw new ParameterException("Parameters -pl and -cs cannot be used together.");
+		
+		// dávky bez souběžného posouvání dělají jen jeden průchod keřem
+		if (args.threads > 0 && args.innerIterations > 1
+				&& !args.workStealing && !args.concurrentShifting)
+			throw new ParameterException("Parameter -ii together with -t requires -cs or -ws.");
+		
 		System.out.print("Loading network... ");
 		long startTime = System.currentTimeMillis();
-		Network map = TNTPParser.parseNetwork(args.networkFile);
+		Network map = BinaryFormat.isBinary(args.networkFile)
+				? BinaryFormat.readNetwork(args.networkFile)
+				: TNTPParser.parseNetwork(args.networkFile);
+		map.setPriorityQueue(args.priorityQueue);
 		long endTime = System.currentTimeMillis();
 		System.out.println("OK (" + (endTime - startTime) + "ms)");
 		
 		System.out.print("Loading OD matrix... ");
 		startTime = System.currentTimeMillis();
-		Matrix odMatrix = TNTPParser.parseODMatrix(args.matrixFile);
+		Matrix odMatrix = BinaryFormat.isBinary(args.matrixFile)
+				? BinaryFormat.readODMatrix(args.matrixFile)
+				: TNTPParser.parseODMatrix(args.matrixFile, args.sparseMatrix, Math.max(1, args.threads));
 		endTime = System.currentTimeMillis();
 		System.out.println("OK (" + (endTime - startTime) + "ms)");
 		
-		Algorithm a = (args.threads == 0)
-				? new Algorithm(map, odMatrix, args.relativeGap, args.iterations)
-				: new ParallelAlgorithm(map, odMatrix, args.relativeGap, args.iterations, args.threads);
+		Algorithm a;
+		if (args.threads == 0)
+			a = new Algorithm(map, odMatrix, args.relativeGap, args.iterations);
+		else {
+			var pa = new ParallelAlgorithm(map, odMatrix, args.relativeGap, args.iterations, args.threads);
+			pa.setConcurrentShifting(args.concurrentShifting);
+			pa.setWorkStealing(args.workStealing);
+			pa.setPipelining(args.pipelined);
+			pa.setPipelineTolerance(args.pipelineTolerance);
+			a = pa;
+		}
+		a.setSparseBushes(args.sparseBushes);
+		a.setGapInterval(args.gapInterval);
+		a.setAsyncGap(args.asyncGap);
+		a.setReverseSweep(args.reverseSweep);
+		a.setInnerIterations(args.innerIterations);
+		a.setInnerTolerance(args.innerTolerance);
+		a.setAdaptiveScheduling(args.adaptiveScheduling);
+		a.setFullPassInterval(args.fullPassInterval);
+		a.setSkipFactor(args.skipFactor);
+		a.setCheckpoint(args.checkpointFile, args.checkpointInterval);
+		a.setResume(args.resumeFile);
+		a.setFlowsOutput(args.flowsFile, args.flowsInterval, args.outputFormat);
 		
 		startTime = System.currentTimeMillis();
 		var arcs = a.start();
 		endTime = System.currentTimeMillis();
 		System.out.println("Static traffic assigment computation time is " + (endTime - startTime) + " ms.");
 		
-		Writer.writeArcs(arcs, args.outputFile);
+		Writer.writeArcs(arcs, args.outputFile, args.outputFormat);
 	}
 }
\ No newline at end of file
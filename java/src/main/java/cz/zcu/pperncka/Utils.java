@@ -2,7 +2,9 @@ package cz.zcu.pperncka;
 
 import java.util.Collection;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 /** Class with some useful methods. */
 public class Utils {
@@ -22,4 +24,35 @@ public class Utils {
 			throw new RuntimeException(e);
 		}
 	}
+	
+	/**
+	 * Waits for the future to complete and returns its result, throwing
+	 * RuntimeException if waiting is interrupted or the task fails.
+	 * @param future future of submitted task
+	 * @param <T> type of result
+	 * @return result of the task
+	 * @throws RuntimeException if get() throws InterruptedException or ExecutionException
+	 */
+	public static <T> T tryGet(Future<T> future) {
+		try {
+			return future.get();
+		} catch (InterruptedException | ExecutionException e) {
+			throw new RuntimeException(e);
+		}
+	}
+	
+	/**
+	 * Waits for all futures to complete, throwing RuntimeException
+	 * if waiting is interrupted or any task fails.
+	 * @param futures futures of submitted tasks
+	 * @throws RuntimeException if get() throws InterruptedException or ExecutionException
+	 */
+	public static void tryWaitAll(Collection<? extends Future<?>> futures) {
+		try {
+			for (Future<?> future : futures)
+				future.get();
+		} catch (InterruptedException | ExecutionException e) {
+			throw new RuntimeException(e);
+		}
+	}
 }
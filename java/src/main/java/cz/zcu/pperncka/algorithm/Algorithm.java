@@ -1,8 +1,16 @@
 package cz.zcu.pperncka.algorithm;
 
+import cz.zcu.pperncka.Utils;
 import cz.zcu.pperncka.data.*;
+import cz.zcu.pperncka.io.Checkpoint;
+import cz.zcu.pperncka.io.CheckpointWriter;
+import cz.zcu.pperncka.io.FlowsWriter;
+import cz.zcu.pperncka.io.Writer;
 
 import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /** Class representing sequential Algorithm B with its input and inner state. */
 public class Algorithm {
@@ -16,6 +24,13 @@ public class Algorithm {
 	 */
 	protected static final double NEWTON_EPSILON = 1e-10;
 	
+	/**
+	 * Divergence nodes of bush are found by preorder labels of min tree,
+	 * if they must be searched for at least every n-th node of the bush,
+	 * otherwise min paths of those nodes are walked.
+	 */
+	protected static final int DIVERGENCE_LABELS_RATIO = 32;
+	
 	/** Road network. */
 	protected final Network map;
 	
@@ -29,10 +44,101 @@ public class Algorithm {
 	protected final int iterations;
 	
 	/**
-	 * Array of bushes, bush on index i is rooted in node i.
-	 * Bush is an acyclic factor of {@code map}.
+	 * Array of bushes of origins with nonzero demand, sorted by their
+	 * roots, null until bushes are created. Bush is an acyclic factor
+	 * of {@code map}. Origins without demand have no bush.
+	 */
+	protected Bush[] bushes = null;
+	
+	/** If true, bushes are created as {@link SparseBush}. */
+	protected boolean sparseBushes = false;
+	
+	/** Exact gap is computed in every {@code gapInterval}-th iteration. */
+	protected int gapInterval = 1;
+	
+	/**
+	 * Excess cost of each origin, i.e. cost of flow of its bush minus
+	 * cost of its demand on min paths in the bush, see {@link #measureExcessCost}.
+	 */
+	protected final double[] excessCosts;
+	
+	/** Max. difference of cost of used path and min path in bush of each origin. */
+	protected final double[] maxExcessCosts;
+	
+	/** Cost of flow of bush of each origin. */
+	protected final double[] bushCosts;
+	
+	/**
+	 * If true, flows are shifted in reverse topological order of bush
+	 * with immediate update of costs, see {@link #setReverseSweep(boolean)}.
+	 */
+	protected boolean reverseSweep = false;
+	
+	/** Max. number of passes of shifting flows on each bush in one iteration. */
+	protected int innerIterations = 1;
+	
+	/** Inner iterations of bush end, when its relative excess cost is at most this number. */
+	protected double innerTolerance = 0;
+	
+	/**
+	 * If true, converged bushes are skipped in some iterations,
+	 * see {@link #setAdaptiveScheduling(boolean)}.
 	 */
-	protected final Bush[] bushes;
+	protected boolean adaptiveScheduling = false;
+	
+	/** With adaptive scheduling, all bushes are processed in every {@code fullPassInterval}-th iteration. */
+	protected int fullPassInterval = 5;
+	
+	/**
+	 * With adaptive scheduling, bush is skipped if its relative excess cost is
+	 * lower than {@code skipFactor} times relative gap of bushes.
+	 */
+	protected double skipFactor = 0.1;
+	
+	/** Min. relative excess cost of bush processed in the current iteration, negative in a full pass. */
+	protected double skipThreshold = -1;
+	
+	/** Max. lower bound of objective function found by gap so far. */
+	protected double maxLb = Double.NEGATIVE_INFINITY;
+	
+	/** If true, the exact gap is computed in the background, see {@link #setAsyncGap(boolean)}. */
+	protected boolean asyncGap = false;
+	
+	/** Executor computing the gap in the background, created on demand. */
+	protected ExecutorService gapExecutor = null;
+	
+	/** Snapshot of network for which the gap is computed in the background. */
+	protected Network snapshot = null;
+	
+	/** Gap being computed in the background, null if there is none. */
+	protected Future<Double> pendingGap = null;
+	
+	/** Objective function of {@code snapshot}. */
+	protected double snapshotObjective;
+	
+	/** Iteration after which {@code snapshot} was taken. */
+	protected int snapshotIteration;
+	
+	/** Writer of checkpoints, null if they are not written. */
+	protected CheckpointWriter checkpointWriter = null;
+	
+	/** Path to checkpoint file from which state is loaded, null to create bushes. */
+	protected String resumeFile = null;
+	
+	/** Number of the first iteration, nonzero when resumed from checkpoint. */
+	protected int firstIteration = 0;
+	
+	/** Arcs whose parameters were changed since bushes were equilibrated, null if there are none. */
+	protected int[] changedArcs = null;
+	
+	/** Changes of demand to be applied to bushes, null if there are none. */
+	protected Matrix demandChange = null;
+	
+	/** Writer of flows, null if they are not written. */
+	protected FlowsWriter flowsWriter = null;
+	
+	/** Total demand of the OD matrix, NaN if it is not known. */
+	protected double totalDemand = Double.NaN;
 	
 	/**
 	 * Creates new instance representing Algorithm B with given input.
@@ -48,24 +154,174 @@ public class Algorithm {
 		this.odMatrix = odMatrix;
 		this.relativeGap = relativeGap;
 		this.iterations = iterations;
-		this.bushes = new Bush[map.zones];
+		this.excessCosts = new double[map.zones];
+		this.maxExcessCosts = new double[map.zones];
+		this.bushCosts = new double[map.zones];
+	}
+	
+	/**
+	 * Sets whether bushes store only their own arcs, which
+	 * saves memory on large networks at the cost of speed.
+	 * @param sparseBushes if true, bushes are created as {@link SparseBush}
+	 */
+	public void setSparseBushes(boolean sparseBushes) {
+		this.sparseBushes = sparseBushes;
+	}
+	
+	/**
+	 * Sets how often is the exact gap computed when relative gap is
+	 * specified. The exact gap needs min trees from all zones, in
+	 * other iterations the last exact gap is kept, so the computation
+	 * stops only after a freshly computed exact gap. The relative gap
+	 * of bushes is only reported, see {@link #reportBushConvergence()}.
+	 * @param gapInterval exact gap is computed in every gapInterval-th iteration
+	 */
+	public void setGapInterval(int gapInterval) {
+		this.gapInterval = gapInterval;
+	}
+	
+	/**
+	 * Sets whether flows of bush are shifted by a sweep over its nodes
+	 * in reverse topological order, as in the original Algorithm B, and
+	 * costs of arcs of both segments are updated right after each shift.
+	 * Otherwise nodes are visited in order of their indices and costs
+	 * are updated after the whole bush.
+	 * @param reverseSweep if true, nodes are visited in reverse topological order
+	 */
+	public void setReverseSweep(boolean reverseSweep) {
+		this.reverseSweep = reverseSweep;
+	}
+	
+	/**
+	 * Sets max. number of passes of shifting flows on each bush in one
+	 * iteration. After the first pass, costs of arcs are updated and
+	 * trees of the bush are found again, but the bush is not improved,
+	 * so its arcs stay the same. Passes end when the relative excess
+	 * cost of the bush is at most {@code innerTolerance}. The batch
+	 * modes of {@link ParallelAlgorithm} make a single pass.
+	 * @param innerIterations max. number of passes on each bush
+	 */
+	public void setInnerIterations(int innerIterations) {
+		this.innerIterations = innerIterations;
+	}
+	
+	/**
+	 * Sets relative excess cost of bush, i.e. excess cost divided by
+	 * cost of flow of the bush, at which inner iterations of the bush end.
+	 * @param innerTolerance relative excess cost, 0 to make all inner iterations
+	 */
+	public void setInnerTolerance(double innerTolerance) {
+		this.innerTolerance = innerTolerance;
+	}
+	
+	/**
+	 * Sets whether bushes are scheduled adaptively. All bushes are
+	 * processed in every {@code fullPassInterval}-th iteration, in
+	 * other iterations only bushes with high excess cost measured
+	 * when they were processed last time are processed, so that
+	 * near-equilibrated bushes do not take time of bushes which
+	 * still shift flows, see {@link #scheduleOrigins(int)}.
+	 * @param adaptiveScheduling if true, converged bushes are skipped
+	 */
+	public void setAdaptiveScheduling(boolean adaptiveScheduling) {
+		this.adaptiveScheduling = adaptiveScheduling;
+	}
+	
+	/**
+	 * Sets how often are all bushes processed with adaptive scheduling.
+	 * @param fullPassInterval all bushes are processed in every fullPassInterval-th iteration
+	 */
+	public void setFullPassInterval(int fullPassInterval) {
+		this.fullPassInterval = fullPassInterval;
 	}
 	
 	/**
-	 * Starts the Algorithm B.
+	 * Sets which bushes are skipped with adaptive scheduling. Bush is
+	 * skipped, if its excess cost divided by cost of its flow is lower
+	 * than {@code skipFactor} times relative gap of bushes.
+	 * @param skipFactor factor of relative gap of bushes, 0 to skip only bushes without excess cost
+	 */
+	public void setSkipFactor(double skipFactor) {
+		this.skipFactor = skipFactor;
+	}
+	
+	/**
+	 * Sets whether the exact gap is computed in the background. Flows
+	 * and costs are copied at the end of an iteration and the gap of
+	 * the copy is computed while next iterations proceed. Termination
+	 * uses the most recently completed gap, so the algorithm may make
+	 * more iterations than needed. A new gap is computed only after
+	 * the previous one is completed. The gap is computed by a single
+	 * background thread, also in {@link ParallelAlgorithm}, whose
+	 * threads thus keep processing bushes.
+	 * @param asyncGap if true, the exact gap is computed in the background
+	 */
+	public void setAsyncGap(boolean asyncGap) {
+		this.asyncGap = asyncGap;
+	}
+	
+	/**
+	 * Sets file to which state of the algorithm, i.e. flows of arcs
+	 * and arcs and flows of all bushes, is written periodically. State
+	 * is copied at the end of an iteration and written in the background
+	 * while next iterations proceed, see {@link CheckpointWriter}.
+	 * @param checkpointFile     path to the checkpoint file, null to not write it
+	 * @param checkpointInterval state is written after every checkpointInterval-th iteration
+	 */
+	public void setCheckpoint(String checkpointFile, int checkpointInterval) {
+		checkpointWriter = checkpointFile == null ? null : new CheckpointWriter(checkpointFile, checkpointInterval);
+	}
+	
+	/**
+	 * Sets file to which flows and costs of arcs are written periodically
+	 * by {@link Writer}, e.g. to watch the computation. Flows are copied
+	 * at the end of an iteration and written in the background while
+	 * next iterations proceed, see {@link FlowsWriter}.
+	 * @param flowsFile     path to the file, may contain %d replaced by number of iterations, null to not write it
+	 * @param flowsInterval flows are written after every flowsInterval-th iteration
+	 * @param flowsFormat   format of the file
+	 */
+	public void setFlowsOutput(String flowsFile, int flowsInterval, Writer.Format flowsFormat) {
+		flowsWriter = flowsFile == null ? null : new FlowsWriter(flowsFile, flowsInterval, flowsFormat);
+	}
+	
+	/**
+	 * Sets file from which state of the algorithm is loaded instead of
+	 * creating bushes, so that the algorithm continues with the iteration
+	 * after the checkpoint. Max. number of iterations includes iterations
+	 * made before the checkpoint. Measures of adaptive scheduling are
+	 * not saved, so the first iteration after resuming processes all bushes.
+	 * @param resumeFile path to the checkpoint file, null to create bushes
+	 */
+	public void setResume(String resumeFile) {
+		this.resumeFile = resumeFile;
+	}
+	
+	/**
+	 * Starts the Algorithm B. Bushes are loaded from the checkpoint
+	 * file, if it is set by {@link #setResume(String)}. Otherwise bushes
+	 * of the previous run of this instance are continued, or created,
+	 * if this is the first run.
 	 * @return array of arcs with assigned flows
 	 */
 	public Network.Arc[] start() {
 		map.updateCosts();
-		for (int root = 0; root < bushes.length; root++)
-			bushes[root] = createBush(root);
-		
-		
-		Network.Arc[] mapArcs = map.getArcs();
-		for (Bush bush : bushes)
-			for (Network.Arc mapArc : mapArcs)
-				mapArc.addFlow(bush.getArcFlow(mapArc.index));
+		if (resumeFile != null)
+			resume();
+		else if (bushes == null) {
+			int[] roots = demandOrigins();
+			bushes = new Bush[roots.length];
+			Workspace workspace = new Workspace(map.nodes);
+			for (int i = 0; i < roots.length; i++)
+				bushes[i] = createBush(roots[i], workspace);
+			
+			for (Bush bush : bushes)
+				for (int i = 0; i < bush.size(); i++)
+					map.addFlow(bush.getArc(i), bush.getFlow(i));
+		}
 		map.updateCosts();
+		repairBushes();
+		applyDemandChange();
 		
 		
 		System.out.println("===================================");
@@ -80,86 +336,651 @@ public class Algorithm {
 		
 		
 		double currentRelativeGap = Double.POSITIVE_INFINITY;
-		double maxLb = Double.NEGATIVE_INFINITY;
-		int currentIteration = 0;
+		int currentIteration = firstIteration;
 		
-		while ((currentIteration < iterations && relativeGap == 0) ||
-				(currentIteration < iterations && currentRelativeGap > relativeGap)) {
-			System.out.println("Iteration " + currentIteration);
-			
-			for (Bush bush : bushes) {
-				improveBush(bush);
-				
-				var trees = getTrees(bush);
-				var minTree = trees.first();
-				var maxTree = trees.second();
+		Workspace workspace = new Workspace(map.nodes);
+		try {
+			while ((currentIteration < iterations && relativeGap == 0) ||
+					(currentIteration < iterations && currentRelativeGap > relativeGap)) {
+				System.out.println("Iteration " + currentIteration);
 				
-				for (int node = 0; node < map.nodes; node++) {
-					int lca = LCA(minTree, maxTree, node);
-					if (lca == -1)
-						continue;
-					
-					double deltaX = findFlowDelta(minTree, maxTree, bush, node, lca);
-					if (deltaX == 0)
+				scheduleOrigins(currentIteration);
+				for (Bush bush : bushes) {
+					if (!isScheduled(bush.root))
 						continue;
 					
-					shiftFlows(minTree, maxTree, bush, node, lca, deltaX);
+					processBush(bush, workspace);
+					map.updateDirtyCosts();
 				}
 				
-				removeUnusedArcs(bush, minTree);
-				map.updateCosts();
+				double of = map.objectiveFunction();
+				System.out.printf(Locale.ROOT, "Objective function: %.15f%n", of);
+				
+				currentRelativeGap = checkConvergence(currentIteration, of, currentRelativeGap);
+				if (checkpointWriter != null)
+					checkpointWriter.write(map, bushes, currentIteration + 1, maxLb);
+				if (flowsWriter != null)
+					flowsWriter.write(map, currentIteration + 1);
+				
+				System.out.println("-----------------------------------");
+				currentIteration++;
+			}
+		} finally {
+			stopGapExecutor();
+			stopWriters();
+		}
+		
+		return map.getArcs();
+	}
+	
+	/**
+	 * Re-equilibrates flows after parameters of given arcs were changed by
+	 * {@link Network#setArcParameters(int, double, double)}, starting from
+	 * an equilibrium of the network before the change instead of from
+	 * all-or-nothing bushes. The equilibrium is loaded from the checkpoint
+	 * file, if it is set, e.g. when each of many variants of a network
+	 * starts from the same base solution. Otherwise bushes of the previous
+	 * run of this instance are used, so variants can be chained.
+	 * <p>
+	 * Bushes which have flow on a changed arc are repaired first, see
+	 * {@link #repairBushes()}. Then the algorithm proceeds as
+	 * {@link #start()}, iterations and relative gap are counted
+	 * from zero, since the changed network is a new problem.
+	 * @param changedArcs indices of arcs with changed parameters
+	 * @return array of arcs with assigned flows
+	 */
+	public Network.Arc[] reequilibrate(int[] changedArcs) {
+		this.changedArcs = changedArcs;
+		return start();
+	}
+	
+	/**
+	 * Repairs bushes affected by arcs changed since the last run, if
+	 * there are any. Each bush which has flow on a changed arc is
+	 * processed once, see {@link #repairBushes(int[])}, so that flow
+	 * moves away from closed or slower arcs before all bushes are
+	 * processed. Bushes which could use faster arcs are improved in
+	 * the following iterations.
+	 */
+	protected void repairBushes() {
+		if (changedArcs == null)
+			return;
+		
+		int[] affected = new int[bushes.length];
+		int count = 0;
+		for (int i = 0; i < bushes.length; i++)
+			for (int arc : changedArcs)
+				if (bushes[i].getArcFlow(arc) != 0) {
+					affected[count++] = i;
+					break;
+				}
+		
+		repairBushes(Arrays.copyOf(affected, count));
+		System.out.println("Repaired bushes: " + count);
+		
+		changedArcs = null;
+		resetConvergence();
+	}
+	
+	/**
+	 * Processes given bushes once, costs are updated after each of them.
+	 * @param indices indices of affected bushes in {@code bushes}
+	 */
+	protected void repairBushes(int[] indices) {
+		Workspace workspace = new Workspace(map.nodes);
+		for (int index : indices) {
+			processBush(bushes[index], workspace);
+			map.updateDirtyCosts();
+		}
+	}
+	
+	/**
+	 * Re-assigns flows after demand of some OD pairs is changed by given
+	 * changes, starting from an equilibrium for the current demand, which
+	 * is loaded or reused as in {@link #reequilibrate(int[])}. Only bushes
+	 * of origins with changed demand are adjusted, see
+	 * {@link #applyDemandChange()}. The OD matrix given to the constructor
+	 * is updated. Iterations and relative gap are counted from zero.
+	 * @param demandChange matrix of changes of trips, zero for unchanged OD pairs
+	 * @return array of arcs with assigned flows
+	 * @throws IllegalArgumentException if the matrix has different size or
+	 * a changed demand is negative
+	 */
+	public Network.Arc[] reassign(Matrix demandChange) {
+		if (demandChange.n != odMatrix.n)
+			throw new IllegalArgumentException("Matrix of changes of demand has different size than OD matrix.");
+		
+		for (int i = 0; i < demandChange.n; i++)
+			for (int k = demandChange.rowStart(i); k < demandChange.rowEnd(i); k++) {
+				int j = demandChange.getColumn(k);
+				if (odMatrix.get(i, j) + demandChange.getValue(k) < 0)
+					throw new IllegalArgumentException("Demand from " + i + " to " + j + " would be negative.");
+			}
+		
+		this.demandChange = demandChange;
+		return start();
+	}
+	
+	/**
+	 * Applies changes of demand given to {@link #reassign(Matrix)}, if
+	 * there are any. Flows of bush of each origin with changed demand are
+	 * adjusted by {@link #shiftDemand(Bush, double[], Workspace)}, the bush
+	 * is created again only if it does not reach a destination with added
+	 * demand. Bushes of other origins are not changed. Origins which had
+	 * no demand get a new bush.
+	 */
+	protected void applyDemandChange() {
+		if (demandChange == null)
+			return;
+		
+		int[] positions = new int[map.zones];
+		Arrays.fill(positions, -1);
+		for (int i = 0; i < bushes.length; i++)
+			positions[bushes[i].root] = i;
+		
+		int adjusted = 0;
+		int created = 0;
+		int added = 0;
+		double[] deltas = new double[map.zones];
+		Workspace workspace = new Workspace(map.nodes);
+		for (int origin = 0; origin < demandChange.n; origin++) {
+			int start = demandChange.rowStart(origin);
+			int end = demandChange.rowEnd(origin);
+			boolean changed = false;
+			for (int k = start; k < end; k++) {
+				int node = demandChange.getColumn(k);
+				deltas[node] = demandChange.getValue(k);
+				if (deltas[node] != 0) {
+					odMatrix.set(origin, node, odMatrix.get(origin, node) + deltas[node]);
+					totalDemand = Double.NaN;
+					changed = true;
+				}
 			}
 			
-			double of = map.objectiveFunction();
-			System.out.printf(Locale.ROOT, "Objective function: %.15f%n", of);
+			int position = positions[origin];
+			if (changed) {
+				adjusted++;
+				if (position == -1 || !shiftDemand(bushes[position], deltas, workspace)) {
+					if (position == -1) {
+						bushes = Arrays.copyOf(bushes, bushes.length + 1);
+						position = bushes.length - 1;
+						added++;
+					} else {
+						Bush bush = bushes[position];
+						for (int i = 0; i < bush.size(); i++)
+							map.addFlow(bush.getArc(i), -bush.getFlow(i));
+						map.updateDirtyCosts();
+					}
+					
+					Bush bush = createBush(origin, workspace);
+					for (int i = 0; i < bush.size(); i++)
+						map.addFlow(bush.getArc(i), bush.getFlow(i));
+					bushes[position] = bush;
+					created++;
+				}
+				map.updateDirtyCosts();
+			}
+			
+			// jen vynulování změněných prvků, řádek řídké matice je krátký
+			for (int k = start; k < end; k++)
+				deltas[demandChange.getColumn(k)] = 0;
+		}
+		
+		// nové keře se zařadí podle kořenů
+		if (added > 0)
+			Arrays.sort(bushes, Comparator.comparingInt(bush -> bush.root));
+		System.out.println("Bushes with changed demand: " + adjusted + " (created: " + created + ")");
+		
+		demandChange = null;
+		resetConvergence();
+	}
+	
+	/**
+	 * Changes flows of bush and network by given changes of demand from
+	 * root of the bush. Change of flow to a node is split among arcs
+	 * of the bush entering the node in proportion to their flows, so
+	 * the relative use of paths of the bush is kept. If no flow enters
+	 * the node, the change is added to the arc of the min tree of the
+	 * bush. Nodes are visited in reverse topological order, so changes
+	 * to all destinations are applied in a single pass over the bush.
+	 * @param bush      bush
+	 * @param deltas    change of trips from root to each zone
+	 * @param workspace workspace of the calling thread
+	 * @return false if the bush does not reach a zone with added trips,
+	 * the bush is then not changed
+	 */
+	protected boolean shiftDemand(Bush bush, double[] deltas, Workspace workspace) {
+		getTrees(bush, workspace);
+		int[] minTree = workspace.minTree;
+		for (int node = 0; node < deltas.length; node++)
+			if (deltas[node] > 0 && node != bush.root && minTree[node] == -1)
+				return false;
+		
+		// vzdálenosti už nejsou potřeba, pole poslouží pro přítoky a změny toků do uzlů
+		double[] inflows = workspace.maxDistance;
+		double[] changes = workspace.minDistance;
+		Arrays.fill(inflows, 0);
+		Arrays.fill(changes, 0);
+		for (int i = 0; i < bush.size(); i++)
+			if (bush.arcExistsAt(i))
+				inflows[map.getEndNode(bush.getArc(i))] += bush.getFlow(i);
+		for (int node = 0; node < deltas.length; node++)
+			if (node != bush.root)
+				changes[node] = deltas[node];
+		
+		int[] order = topologicalOrder(bush);
+		for (int k = order.length - 1; k >= 0; k--) {
+			int startNode = order[k];
+			int last = map.lastArcOf(startNode);
 			
-			if (relativeGap != 0) {
-				double gap = map.gap(odMatrix);
-				double lb = of + gap;
-				if (lb > maxLb)
-					maxLb = lb;
+			for (int i = bush.positionOf(map.firstArcOf(startNode));
+				 i < bush.size() && bush.getArc(i) < last; i++) {
+				if (!bush.arcExistsAt(i))
+					continue;
+				int arc = bush.getArc(i);
+				int endNode = map.getEndNode(arc);
+				if (changes[endNode] == 0)
+					continue;
+				
+				double flow = bush.getFlow(i);
+				double delta;
+				if (inflows[endNode] > 0)
+					delta = changes[endNode] * flow / inflows[endNode];
+				else
+					delta = (minTree[endNode] == arc) ? changes[endNode] : 0;
 				
-				currentRelativeGap = -gap / Math.abs(maxLb);
+				// zaokrouhlení nesmí vést k zápornému toku
+				if (flow + delta < 0)
+					delta = -flow;
+				if (delta == 0)
+					continue;
 				
-				System.out.printf(Locale.ROOT, "Gap: %.15f%n", gap);
-				System.out.printf(Locale.ROOT, "Relative gap: %.15f%n", currentRelativeGap);
+				bush.addFlow(arc, delta);
+				map.addFlow(arc, delta);
+				changes[startNode] += delta;
+			}
+		}
+		
+		return true;
+	}
+	
+	/**
+	 * Resets number of the first iteration and the lower bound of objective
+	 * function after the network or demand is changed, since the changed
+	 * problem is a new problem.
+	 */
+	protected void resetConvergence() {
+		firstIteration = 0;
+		maxLb = Double.NEGATIVE_INFINITY;
+	}
+	
+	/**
+	 * Decides which bushes are processed in given iteration. Without
+	 * adaptive scheduling, or in a full pass, all bushes are processed.
+	 * Otherwise bushes are compared by excess costs measured when they
+	 * were processed last time, so measures of skipped bushes are kept
+	 * until the next full pass.
+	 * @param iteration number of the iteration
+	 */
+	protected void scheduleOrigins(int iteration) {
+		// po obnovení z checkpointu nejsou míry keřů známy
+		if (!adaptiveScheduling || iteration % fullPassInterval == 0 || iteration == firstIteration) {
+			skipThreshold = -1;
+			return;
+		}
+		
+		double excessCost = 0;
+		double bushCost = 0;
+		for (Bush bush : bushes) {
+			excessCost += excessCosts[bush.root];
+			bushCost += bushCosts[bush.root];
+		}
+		skipThreshold = (bushCost == 0) ? 0 : skipFactor * excessCost / bushCost;
+		
+		int skipped = 0;
+		for (Bush bush : bushes)
+			if (!isScheduled(bush.root))
+				skipped++;
+		System.out.println("Skipped bushes: " + skipped);
+	}
+	
+	/**
+	 * Returns if bush of given origin is processed in the current
+	 * iteration, see {@link #scheduleOrigins(int)}.
+	 * @param origin root of the bush
+	 * @return true, if the bush is processed, false if it is skipped
+	 */
+	protected boolean isScheduled(int origin) {
+		if (skipThreshold < 0)
+			return true;
+		
+		// keř bez přebytečné ceny nemá co posouvat
+		return excessCosts[origin] > skipThreshold * bushCosts[origin];
+	}
+	
+	/**
+	 * Reports convergence after an iteration and returns the relative gap
+	 * used for termination. Depending on settings, it is the exact relative
+	 * gap computed in this iteration, the last one computed before or the
+	 * most recent relative gap computed in the background.
+	 * @param iteration          number of the iteration
+	 * @param of                 objective function after the iteration
+	 * @param currentRelativeGap relative gap known before the iteration
+	 * @return relative gap known after the iteration
+	 */
+	protected double checkConvergence(int iteration, double of, double currentRelativeGap) {
+		reportBushConvergence();
+		if (relativeGap == 0)
+			return currentRelativeGap;
+		
+		if (asyncGap) {
+			if (pendingGap != null && pendingGap.isDone()) {
+				System.out.println("Gap after iteration " + snapshotIteration + ":");
+				currentRelativeGap = reportGap(snapshotObjective, Utils.tryGet(pendingGap));
+				pendingGap = null;
 			}
 			
-			System.out.println("-----------------------------------");
-			currentIteration++;
+			if (pendingGap == null && iteration % gapInterval == 0) {
+				if (gapExecutor == null)
+					gapExecutor = Executors.newSingleThreadExecutor();
+				
+				snapshot = map.snapshot(snapshot);
+				snapshotObjective = of;
+				snapshotIteration = iteration;
+				Network network = snapshot;
+				pendingGap = gapExecutor.submit(() -> gap(network));
+			}
+			
+			return currentRelativeGap;
 		}
 		
-		return map.getArcs();
+		// mezi přesnými gapy zůstává poslední přesný, končí se jen po čerstvě spočteném
+		if (iteration % gapInterval != 0)
+			return currentRelativeGap;
+		
+		return reportGap(of, gap(map));
+	}
+	
+	/**
+	 * Computes the exact gap of given network.
+	 * @param network the network or its snapshot
+	 * @return value of gap w.r.t. flows of the network
+	 */
+	protected double gap(Network network) {
+		return network.gap(odMatrix);
+	}
+	
+	/**
+	 * Prints the gap and relative gap computed from it.
+	 * @param of  objective function for which the gap was computed
+	 * @param gap gap
+	 * @return relative gap
+	 */
+	protected double reportGap(double of, double gap) {
+		double lb = of + gap;
+		if (lb > maxLb)
+			maxLb = lb;
+		
+		double currentRelativeGap = -gap / Math.abs(maxLb);
+		
+		System.out.printf(Locale.ROOT, "Gap: %.15f%n", gap);
+		System.out.printf(Locale.ROOT, "Relative gap: %.15f%n", currentRelativeGap);
+		
+		return currentRelativeGap;
+	}
+	
+	/**
+	 * Loads bushes and flows of arcs from the checkpoint file given
+	 * by {@link #setResume(String)}. Costs are not updated.
+	 */
+	protected void resume() {
+		Checkpoint checkpoint = Checkpoint.read(resumeFile, map, this::newBush);
+		bushes = checkpoint.bushes;
+		for (int i = 0; i < checkpoint.flows.length; i++)
+			map.setFlow(i, checkpoint.flows[i]);
+		
+		firstIteration = checkpoint.iteration;
+		maxLb = checkpoint.maxLb;
+		System.out.println("Resumed from " + resumeFile + " after iteration " + (firstIteration - 1));
+	}
+	
+	/** Waits for the checkpoint and flows being written, if there are any, and stops their threads. */
+	protected void stopWriters() {
+		if (checkpointWriter != null)
+			checkpointWriter.close();
+		if (flowsWriter != null)
+			flowsWriter.close();
+	}
+	
+	/** Stops computation of the gap in the background, if there is any. */
+	protected void stopGapExecutor() {
+		if (gapExecutor == null)
+			return;
+		
+		gapExecutor.shutdownNow();
+		gapExecutor = null;
+		pendingGap = null;
+	}
+	
+	/**
+	 * Performs one iteration of Algorithm B on a bush. The bush
+	 * is improved, flows are shifted from max paths to min paths
+	 * and unused arcs are removed. Costs are not updated.
+	 * @param bush      bush
+	 * @param workspace workspace of the calling thread
+	 */
+	protected void processBush(Bush bush, Workspace workspace) {
+		shiftBushFlows(bush, workspace);
+		removeUnusedArcs(bush, workspace.minTree);
+	}
+	
+	/**
+	 * Improves the bush and shifts flows from its max paths to its min
+	 * paths. Tree of min paths is left in {@code minTree} of workspace.
+	 * With inner iterations, see {@link #setInnerIterations(int)}, costs
+	 * of arcs of the bush are updated and flows are shifted again on the
+	 * same bush, until its relative excess cost is below the tolerance.
+	 * @param bush      bush
+	 * @param workspace workspace of the calling thread
+	 */
+	protected void shiftBushFlows(Bush bush, Workspace workspace) {
+		improveBush(bush, workspace);
+		
+		getTrees(bush, workspace);
+		measureExcessCost(bush, workspace);
+		shiftSegments(bush, workspace);
+		
+		for (int i = 1; i < innerIterations; i++) {
+			updateBushCosts(bush);
+			getTrees(bush, workspace);
+			measureExcessCost(bush, workspace);
+			if (excessCosts[bush.root] <= innerTolerance * bushCosts[bush.root])
+				break;
+			
+			shiftSegments(bush, workspace);
+		}
+	}
+	
+	/**
+	 * Shifts flows from max path segments to min path segments
+	 * of all nodes of the bush, whose trees are in the workspace.
+	 * @param bush      bush
+	 * @param workspace workspace with trees of the bush
+	 */
+	protected void shiftSegments(Bush bush, Workspace workspace) {
+		divergenceNodes(bush, workspace);
+		shiftNodes(bush, workspace, reverseSweep, reverseSweep);
+	}
+	
+	/**
+	 * Shifts flows from max path segments to min path segments of
+	 * nodes of the bush, whose divergence nodes are in {@code nodeResults}
+	 * of the workspace, see {@link #divergenceNodes(Bush, Workspace)}.
+	 * @param bush        bush
+	 * @param workspace   workspace with trees and divergence nodes of the bush
+	 * @param reverse     if true, nodes are visited in reverse topological order,
+	 *                    otherwise in order of their indices
+	 * @param updateCosts if true, costs of arcs of both segments are updated
+	 *                    right after each shift
+	 */
+	protected void shiftNodes(Bush bush, Workspace workspace, boolean reverse, boolean updateCosts) {
+		var minTree = workspace.minTree;
+		var maxTree = workspace.maxTree;
+		int[] divergenceNodes = workspace.nodeResults;
+		int[] order = reverse ? topologicalOrder(bush) : null;
+		int count = reverse ? order.length : map.nodes;
+		
+		for (int i = 0; i < count; i++) {
+			int node = reverse ? order[count - 1 - i] : i;
+			int lca = divergenceNodes[node];
+			if (lca == -1)
+				continue;
+			
+			double deltaX = findFlowDelta(minTree, maxTree, bush, node, lca, workspace);
+			if (deltaX == 0)
+				continue;
+			
+			shiftFlows(minTree, maxTree, bush, node, lca, deltaX);
+			if (updateCosts)
+				updateSegmentCosts(minTree, maxTree, node, lca);
+		}
+	}
+	
+	/**
+	 * Measures excess cost of origin of the bush w.r.t. current costs.
+	 * Excess cost is the difference between cost of flow of the bush
+	 * and cost of the same demand assigned to min paths in the bush.
+	 * Distances of trees found by {@link #getTrees(Bush, Workspace)}
+	 * are used, so only a single pass over the bush is needed.
+	 * @param bush      bush
+	 * @param workspace workspace with trees of the bush
+	 */
+	protected void measureExcessCost(Bush bush, Workspace workspace) {
+		double bushCost = 0;
+		for (int i = 0; i < bush.size(); i++) {
+			if (!bush.arcExistsAt(i))
+				continue;
+			bushCost += bush.getFlow(i) * map.getCost(bush.getArc(i));
+		}
+		
+		double minCost = 0;
+		double maxExcessCost = 0;
+		for (int k = odMatrix.rowStart(bush.root); k < odMatrix.rowEnd(bush.root); k++) {
+			double trips = odMatrix.getValue(k);
+			int node = odMatrix.getColumn(k);
+			if (trips == 0 || workspace.minDistance[node] == Double.POSITIVE_INFINITY)
+				continue;
+			
+			minCost += trips * workspace.minDistance[node];
+			
+			// max. strom obsahuje jen hrany s tokem, tedy použité cesty
+			double excessCost = workspace.maxDistance[node] - workspace.minDistance[node];
+			if (excessCost > maxExcessCost)
+				maxExcessCost = excessCost;
+		}
+		
+		excessCosts[bush.root] = bushCost - minCost;
+		maxExcessCosts[bush.root] = maxExcessCost;
+		bushCosts[bush.root] = bushCost;
+	}
+	
+	/**
+	 * Prints convergence measures computed from bushes in the last
+	 * iteration by {@link #measureExcessCost(Bush, Workspace)}. Bushes
+	 * are measured at different times during the iteration, so these
+	 * measures approximate the exact gap without additional search
+	 * of min trees.
+	 * @return relative gap computed from bushes, i.e. total excess
+	 * cost divided by total cost of flows of bushes
+	 */
+	protected double reportBushConvergence() {
+		double excessCost = 0;
+		double maxExcessCost = 0;
+		double bushCost = 0;
+		for (Bush bush : bushes) {
+			excessCost += excessCosts[bush.root];
+			bushCost += bushCosts[bush.root];
+			if (maxExcessCosts[bush.root] > maxExcessCost)
+				maxExcessCost = maxExcessCosts[bush.root];
+		}
+		
+		double bushRelativeGap = (bushCost == 0) ? 0 : excessCost / bushCost;
+		double demand = totalDemand();
+		double averageExcessCost = (demand == 0) ? 0 : excessCost / demand;
+		
+		System.out.printf(Locale.ROOT, "Average excess cost: %.15f%n", averageExcessCost);
+		System.out.printf(Locale.ROOT, "Max. excess cost: %.15f%n", maxExcessCost);
+		System.out.printf(Locale.ROOT, "Relative gap of bushes: %.15f%n", bushRelativeGap);
+		
+		return bushRelativeGap;
+	}
+	
+	/**
+	 * Returns total demand of the OD matrix, which is summed
+	 * only once and again after the demand changes.
+	 * @return sum of all trips
+	 */
+	protected double totalDemand() {
+		if (Double.isNaN(totalDemand))
+			totalDemand = odMatrix.sum();
+		
+		return totalDemand;
+	}
+	
+	/**
+	 * Returns origins with nonzero demand, only they get a bush.
+	 * @return sorted array of origins with nonzero demand
+	 */
+	protected int[] demandOrigins() {
+		int count = 0;
+		int[] origins = new int[map.zones];
+		for (int origin = 0; origin < map.zones; origin++)
+			if (odMatrix.hasNonzero(origin))
+				origins[count++] = origin;
+		
+		return Arrays.copyOf(origins, count);
+	}
+	
+	/**
+	 * Creates an empty bush rooted in given node.
+	 * @param root root of the bush
+	 * @return {@link SparseBush} if bushes are sparse, {@link Bush} otherwise
+	 */
+	protected Bush newBush(int root) {
+		return sparseBushes
+				? new SparseBush(map.getArcs().length, root)
+				: new Bush(map.getArcs().length, root);
 	}
 	
 	/**
 	 * Creates a bush rooted in given node. Bush is created as a
 	 * factor of {@code map} with only those arcs which start node
 	 * is closer (w.r.t. cost) to root than end node.
-	 * @param root root of the bush
+	 * @param root      root of the bush
+	 * @param workspace workspace of the calling thread
 	 * @return bush - acyclic factor of {@code map}
 	 */
-	protected Bush createBush(int root) {
-		var pair = map.minTree(root);
-		double[] distances = pair.first();
-		Network.Arc[] previous = pair.second();
+	protected Bush createBush(int root, Workspace workspace) {
+		map.minTree(root, workspace);
+		double[] distances = workspace.minDistance;
+		int[] previous = workspace.minTree;
 		
-		Bush bush = new Bush(map.getArcs().length, root);
+		Bush bush = newBush(root);
 		
-		for (Network.Arc arc : map.getArcs())
-			if (distances[arc.startNode] < distances[arc.endNode])
-				bush.addArc(arc.index);
+		for (int arc = 0; arc < map.getArcs().length; arc++)
+			if (distances[map.getStartNode(arc)] < distances[map.getEndNode(arc)])
+				bush.addArc(arc);
 		
-		for (int node = 0; node < map.zones; node++) {
-			double trips = odMatrix.get(root, node);
+		for (int k = odMatrix.rowStart(root); k < odMatrix.rowEnd(root); k++) {
+			double trips = odMatrix.getValue(k);
 			if (trips == 0)
 				continue;
 			
-			Network.Arc arc = previous[node];
-			while (arc != null) {
-				bush.addFlow(arc.index, trips);
+			int arc = previous[odMatrix.getColumn(k)];
+			while (arc != -1) {
+				bush.addFlow(arc, trips);
 				
-				arc = previous[arc.startNode];
+				arc = previous[map.getStartNode(arc)];
 			}
 		}
 		
@@ -170,55 +991,83 @@ public class Algorithm {
 	 * Improves bush by adding arcs to it. Arc is added if maximum
 	 * distance in bush of its start node is smaller than maximum
 	 * distance in bush of its end node.
-	 * @param bush bush to be improved
+	 * @param bush      bush to be improved
+	 * @param workspace workspace of the calling thread
 	 */
-	protected void improveBush(Bush bush) {
-		double[] maxDistance = getMaxDistance(bush);
+	protected void improveBush(Bush bush, Workspace workspace) {
+		double[] maxDistance = getMaxDistance(bush, workspace);
+		int[] order = topologicalOrder(bush);
 		
-		for (Network.Arc arc : map.getArcs()) {
-			if (maxDistance[arc.startNode] == Double.NEGATIVE_INFINITY
-					|| maxDistance[arc.endNode] == Double.NEGATIVE_INFINITY)
-				continue;
+		// hrany se přidají až po průchodu, aby se neposunuly pozice v keři
+		int addedCount = 0;
+		
+		int size = bush.size();
+		for (int node : order) {
+			int position = bush.positionOf(map.firstArcOf(node));
 			
-			if (maxDistance[arc.startNode] < maxDistance[arc.endNode]) {
-				bush.addArc(arc.index);
+			for (int arc = map.firstArcOf(node); arc < map.lastArcOf(node); arc++) {
+				while (position < size && bush.getArc(position) < arc)
+					position++;
+				
+				if (position < size && bush.getArc(position) == arc
+						&& bush.arcExistsAt(position))
+					continue;
+				
+				int endNode = map.getEndNode(arc);
+				if (maxDistance[endNode] == Double.NEGATIVE_INFINITY)
+					continue;
+				
+				if (maxDistance[node] < maxDistance[endNode]) {
+					workspace.ensureArcBuffer(addedCount + 1);
+					workspace.arcBuffer[addedCount++] = arc;
+				}
 			}
 		}
+		
+		for (int i = 0; i < addedCount; i++)
+			bush.addArc(workspace.arcBuffer[i]);
+		
+		// množina dosažitelných uzlů se přidáním hran nemění,
+		// nové pořadí se proto zapíše do pole starého pořadí
+		if (bush.getTopologicalOrder() == null) {
+			int[] indegree = indegree(bush, order, workspace.nodeValues);
+			topologicalSort(bush, indegree, workspace.nodeBuffer);
+			System.arraycopy(workspace.nodeBuffer, 0, order, 0, order.length);
+			bush.setTopologicalOrder(order);
+		}
 	}
 	
 	/**
 	 * Return maximum distances (w.r.t. cost) in bush for each node.
-	 * @param bush bush in which maximum distances are found
-	 * @return array of maximum distances for each node
+	 * The distances are stored to {@code maxDistance} of given workspace.
+	 * @param bush      bush in which maximum distances are found
+	 * @param workspace workspace of the calling thread
+	 * @return array {@code maxDistance} of the workspace with maximum distances for each node
 	 */
-	protected double[] getMaxDistance(Bush bush) {
-		// spočtení vstupní stupně vrcholů, kvůli udržení topologického seřazení
-		int[] indegree = indegree(bush);
+	protected double[] getMaxDistance(Bush bush, Workspace workspace) {
+		int[] order = topologicalOrder(bush);
 		
 		
 		// strom maximálních cest
-		double[] maxTreeDistance = new double[map.nodes];
+		double[] maxTreeDistance = workspace.maxDistance;
 		Arrays.fill(maxTreeDistance, Double.NEGATIVE_INFINITY);
 		maxTreeDistance[bush.root] = 0;
 		
 		
-		IntQueue queue = new IntQueue(map.nodes);
-		queue.enqueue(bush.root);
-		while (!queue.isEmpty()) {
-			int startNode = queue.dequeue();
+		for (int startNode : order) {
+			int last = map.lastArcOf(startNode);
 			
-			for (Network.Arc arc : map.neighborsOf(startNode)) {
-				if (!bush.arcExists(arc.index))
+			for (int i = bush.positionOf(map.firstArcOf(startNode));
+				 i < bush.size() && bush.getArc(i) < last; i++) {
+				if (!bush.arcExistsAt(i))
 					continue;
+				int arc = bush.getArc(i);
+				int endNode = map.getEndNode(arc);
 				
-				double newDistance = maxTreeDistance[startNode] + arc.getCost();
-				if (maxTreeDistance[arc.endNode] < newDistance) {
-					maxTreeDistance[arc.endNode] = newDistance;
+				double newDistance = maxTreeDistance[startNode] + map.getCost(arc);
+				if (maxTreeDistance[endNode] < newDistance) {
+					maxTreeDistance[endNode] = newDistance;
 				}
-				
-				indegree[arc.endNode]--;
-				if (indegree[arc.endNode] == 0)
-					queue.enqueue(arc.endNode);
 			}
 		}
 		
@@ -226,59 +1075,119 @@ public class Algorithm {
 	}
 	
 	/**
-	 * Returns trees of max and min paths to each node in the bush.
-	 * Distances are computed w.r.t cost.
-	 * @param bush bush in which trees are found
-	 * @return pair (min tree, max tree)
+	 * Finds trees of max and min paths to each node in the bush.
+	 * Distances are computed w.r.t cost. The trees are stored
+	 * to {@code minTree} and {@code maxTree} of given workspace.
+	 * @param bush      bush in which trees are found
+	 * @param workspace workspace of the calling thread
 	 */
-	protected Pair<Network.Arc[], Network.Arc[]> getTrees(Bush bush) {
-		// spočtení vstupní stupně vrcholů, kvůli udržení topologického seřazení
-		int[] indegree = indegree(bush);
+	protected void getTrees(Bush bush, Workspace workspace) {
+		int[] order = topologicalOrder(bush);
 		
 		
 		// strom minimálních cest
-		double[] minTreeDistance = new double[map.nodes];
+		double[] minTreeDistance = workspace.minDistance;
 		Arrays.fill(minTreeDistance, Double.POSITIVE_INFINITY);
 		minTreeDistance[bush.root] = 0;
 		
-		Network.Arc[] minTreePrevious = new Network.Arc[map.nodes];
+		int[] minTreePrevious = workspace.minTree;
+		Arrays.fill(minTreePrevious, -1);
 		
 		// strom maximálních cest
-		double[] maxTreeDistance = new double[map.nodes];
+		double[] maxTreeDistance = workspace.maxDistance;
 		Arrays.fill(maxTreeDistance, Double.NEGATIVE_INFINITY);
 		maxTreeDistance[bush.root] = 0;
 		
-		Network.Arc[] maxTreePrevious = new Network.Arc[map.nodes];
+		int[] maxTreePrevious = workspace.maxTree;
+		Arrays.fill(maxTreePrevious, -1);
 		
 		
-		IntQueue queue = new IntQueue(map.nodes);
-		queue.enqueue(bush.root);
-		while (!queue.isEmpty()) {
-			int startNode = queue.dequeue();
+		for (int startNode : order) {
+			int last = map.lastArcOf(startNode);
 			
-			for (Network.Arc arc : map.neighborsOf(startNode)) {
-				if (!bush.arcExists(arc.index))
+			for (int i = bush.positionOf(map.firstArcOf(startNode));
+				 i < bush.size() && bush.getArc(i) < last; i++) {
+				if (!bush.arcExistsAt(i))
 					continue;
+				int arc = bush.getArc(i);
+				int endNode = map.getEndNode(arc);
+				double cost = map.getCost(arc);
 				
-				double newDistance = minTreeDistance[startNode] + arc.getCost();
-				if (minTreeDistance[arc.endNode] > newDistance) {
-					minTreeDistance[arc.endNode] = newDistance;
-					minTreePrevious[arc.endNode] = arc;
+				double newDistance = minTreeDistance[startNode] + cost;
+				if (minTreeDistance[endNode] > newDistance) {
+					minTreeDistance[endNode] = newDistance;
+					minTreePrevious[endNode] = arc;
 				}
 				
-				newDistance = maxTreeDistance[startNode] + arc.getCost();
-				if (maxTreeDistance[arc.endNode] < newDistance && bush.getArcFlow(arc.index) != 0) {
-					maxTreeDistance[arc.endNode] = newDistance; // ^^ hrana musí být aktivní
-					maxTreePrevious[arc.endNode] = arc;
+				newDistance = maxTreeDistance[startNode] + cost;
+				if (maxTreeDistance[endNode] < newDistance && bush.getFlow(i) != 0) {
+					maxTreeDistance[endNode] = newDistance; // ^^ hrana musí být aktivní
+					maxTreePrevious[endNode] = arc;
 				}
+			}
+		}
+	}
+	
+	/**
+	 * Returns nodes reachable from root of the bush in topological
+	 * order. The order is cached in the bush, it is computed from
+	 * the whole network only if the bush does not know it.
+	 * @param bush bush
+	 * @return array of nodes in topological order
+	 */
+	protected int[] topologicalOrder(Bush bush) {
+		int[] order = bush.getTopologicalOrder();
+		if (order == null) {
+			order = topologicalSort(bush, indegree(bush));
+			bush.setTopologicalOrder(order);
+		}
+		
+		return order;
+	}
+	
+	/**
+	 * Sorts nodes reachable from root of the bush topologically
+	 * using Kahn's algorithm.
+	 * @param bush     bush
+	 * @param indegree array of indegrees for each node, is modified
+	 * @return array of nodes in topological order
+	 */
+	protected int[] topologicalSort(Bush bush, int[] indegree) {
+		int[] order = new int[map.nodes];
+		int count = topologicalSort(bush, indegree, order);
+		
+		return Arrays.copyOf(order, count);
+	}
+	
+	/**
+	 * Same as {@link #topologicalSort(Bush, int[])}, but
+	 * the nodes are written to given array.
+	 * @param bush     bush
+	 * @param indegree array of indegrees for each node, is modified
+	 * @param order    array for each node, to which the nodes are written
+	 * @return number of nodes written to {@code order}
+	 */
+	protected int topologicalSort(Bush bush, int[] indegree, int[] order) {
+		// pole pořadí slouží zároveň jako fronta
+		int count = 0;
+		order[count++] = bush.root;
+		
+		for (int i = 0; i < count; i++) {
+			int last = map.lastArcOf(order[i]);
+			
+			for (int j = bush.positionOf(map.firstArcOf(order[i]));
+				 j < bush.size() && bush.getArc(j) < last; j++) {
+				if (!bush.arcExistsAt(j))
+					continue;
+				int endNode = map.getEndNode(bush.getArc(j));
 				
-				indegree[arc.endNode]--;
-				if (indegree[arc.endNode] == 0)
-					queue.enqueue(arc.endNode);
+				indegree[endNode]--;
+				if (indegree[endNode] == 0)
+					order[count++] = endNode;
 			}
 		}
 		
-		return new Pair<>(minTreePrevious, maxTreePrevious);
+		return count;
 	}
 	
 	/**
@@ -289,10 +1198,46 @@ public class Algorithm {
 	protected int[] indegree(Bush bush) {
 		int[] indegree = new int[map.nodes];
 		
-		for (Network.Arc arc : map.getArcs()) {
-			if (!bush.arcExists(arc.index))
+		for (int i = 0; i < bush.size(); i++) {
+			if (!bush.arcExistsAt(i))
 				continue;
-			indegree[arc.endNode]++;
+			indegree[map.getEndNode(bush.getArc(i))]++;
+		}
+		
+		return indegree;
+	}
+	
+	/**
+	 * Computes the indegree of each node in the bush
+	 * considering only arcs starting in given nodes.
+	 * @param bush  bush
+	 * @param nodes nodes whose outgoing arcs are counted
+	 * @return array of indegrees for each node
+	 */
+	protected int[] indegree(Bush bush, int[] nodes) {
+		return indegree(bush, nodes, new int[map.nodes]);
+	}
+	
+	/**
+	 * Same as {@link #indegree(Bush, int[])}, but the
+	 * indegrees are written to given array.
+	 * @param bush     bush
+	 * @param nodes    nodes whose outgoing arcs are counted
+	 * @param indegree array for each node, is overwritten
+	 * @return array {@code indegree}
+	 */
+	protected int[] indegree(Bush bush, int[] nodes, int[] indegree) {
+		Arrays.fill(indegree, 0);
+		
+		for (int node : nodes) {
+			int last = map.lastArcOf(node);
+			
+			for (int i = bush.positionOf(map.firstArcOf(node));
+				 i < bush.size() && bush.getArc(i) < last; i++) {
+				if (!bush.arcExistsAt(i))
+					continue;
+				indegree[map.getEndNode(bush.getArc(i))]++;
+			}
 		}
 		
 		return indegree;
@@ -302,97 +1247,202 @@ public class Algorithm {
 	 * Finds segments of min and max path that start at the
 	 * same node (which is returned) end at given node and
 	 * have no shared nodes or arcs in between. Similar to
-	 * Lowest Common Ancestor procedure.
-	 * @param minTree tree of min paths
-	 * @param maxTree tree of max paths
-	 * @param node node, at which segments end
+	 * Lowest Common Ancestor procedure. Nodes of min path
+	 * are marked in given workspace.
+	 * @param minTree   tree of min paths
+	 * @param maxTree   tree of max paths
+	 * @param node      node, at which segments end
+	 * @param workspace workspace of the calling thread
 	 * @return node, at which segments start
 	 */
-	protected int LCA(Network.Arc[] minTree, Network.Arc[] maxTree, int node) {
-		Network.Arc minTreePrev = minTree[node];
-		Network.Arc maxTreePrev = maxTree[node];
+	protected int LCA(int[] minTree, int[] maxTree, int node, Workspace workspace) {
+		int minTreePrev = minTree[node];
+		int maxTreePrev = maxTree[node];
 		
-		if (maxTreePrev == null || minTreePrev == null)
+		if (maxTreePrev == -1 || minTreePrev == -1)
 			return -1;
-		if (minTreePrev.startNode == maxTreePrev.startNode)
+		if (map.getStartNode(minTreePrev) == map.getStartNode(maxTreePrev))
 			return -1;
 		
-		IntSet flags = new IntSet(100, 2);
-		while (minTreePrev != null) {
-			flags.add(minTreePrev.startNode);
-			minTreePrev = minTree[minTreePrev.startNode];
+		workspace.newMark();
+		while (minTreePrev != -1) {
+			int startNode = map.getStartNode(minTreePrev);
+			workspace.mark(startNode);
+			minTreePrev = minTree[startNode];
 		}
 		
 		while (true) {
-			if (maxTreePrev == null)
+			if (maxTreePrev == -1)
 				return -1;
-			if (flags.contains(maxTreePrev.startNode))
-				return maxTreePrev.startNode;
-			maxTreePrev = maxTree[maxTreePrev.startNode];
+			int startNode = map.getStartNode(maxTreePrev);
+			if (workspace.isMarked(startNode))
+				return startNode;
+			maxTreePrev = maxTree[startNode];
 		}
 	}
 	
+	/**
+	 * Finds divergence nodes of all nodes of the bush at once, the result
+	 * is the same as of {@link #LCA(int[], int[], int, Workspace)}
+	 * for each node. Nodes of the min tree are numbered in preorder, so
+	 * that subtree of node v has numbers from {@code nodeLabels[v]} to
+	 * {@code nodeValues[v]} (exclusive) and whether a node lies on min
+	 * path to another node is decided in constant time. Only the max
+	 * path segment of each node is then walked, instead of whole min
+	 * path to the root. The labels are computed only if segments of
+	 * enough nodes diverge, see {@link #DIVERGENCE_LABELS_RATIO}.
+	 * @param bush      bush with trees found by {@link #getTrees(Bush, Workspace)}
+	 * @param workspace workspace with trees of the bush, divergence node
+	 *                  of each node or -1 is stored to {@code nodeResults}
+	 */
+	protected void divergenceNodes(Bush bush, Workspace workspace) {
+		int[] order = topologicalOrder(bush);
+		int[] minTree = workspace.minTree;
+		int[] maxTree = workspace.maxTree;
+		int[] candidates = workspace.nodeBuffer;
+		int[] result = workspace.nodeResults;
+		
+		// uzly, jejichž min. a max. segment se mohou rozcházet
+		int count = 0;
+		for (int node : order) {
+			int minTreePrev = minTree[node];
+			int maxTreePrev = maxTree[node];
+			if (maxTreePrev != -1 && minTreePrev != -1
+					&& map.getStartNode(minTreePrev) != map.getStartNode(maxTreePrev))
+				candidates[count++] = node;
+		}
+		
+		// pro málo uzlů je levnější projít jejich min. cesty
+		if (count < order.length / DIVERGENCE_LABELS_RATIO) {
+			Arrays.fill(result, -1);
+			for (int i = 0; i < count; i++)
+				result[candidates[i]] = LCA(minTree, maxTree, candidates[i], workspace);
+			return;
+		}
+		
+		int[] enter = workspace.nodeLabels;
+		int[] exit = workspace.nodeValues;
+		int[] next = result;
+		
+		// velikosti podstromů, předchůdce je v pořadí vždy dříve
+		for (int node : order)
+			exit[node] = 1;
+		for (int i = order.length - 1; i > 0; i--) {
+			int arc = minTree[order[i]];
+			if (arc != -1)
+				exit[map.getStartNode(arc)] += exit[order[i]];
+		}
+		
+		// číslování v preorderu, podstrom uzlu je souvislý interval
+		for (int node : order) {
+			int arc = minTree[node];
+			if (arc == -1)
+				enter[node] = 0;
+			else {
+				int parent = map.getStartNode(arc);
+				enter[node] = next[parent];
+				next[parent] += exit[node];
+			}
+			next[node] = enter[node] + 1;
+			exit[node] += enter[node];
+		}
+		
+		Arrays.fill(result, -1);
+		for (int i = 0; i < count; i++) {
+			int node = candidates[i];
+			int maxTreePrev = maxTree[node];
+			while (maxTreePrev != -1) {
+				int ancestor = map.getStartNode(maxTreePrev);
+				if (enter[ancestor] <= enter[node] && enter[node] < exit[ancestor]) {
+					result[node] = ancestor;
+					break;
+				}
+				maxTreePrev = maxTree[ancestor];
+			}
+		}
+	}
+	
+	
 	/**
 	 * Finds the flow that will be shifted from max path segment
 	 * to min path segment so that those segments are in equilibrium.
-	 * @param minTree tree of min paths
-	 * @param maxTree tree of max paths
-	 * @param bush bush
-	 * @param node node, at which segments end
-	 * @param lca node, at which segments start
+	 * Both segments are copied to {@code segments} of given workspace
+	 * once, so that Newton method does not walk the trees. Newton method
+	 * is safeguarded by bisection, the flow is kept in an interval, at whose
+	 * lower bound max segment is more expensive than min segment and at whose
+	 * upper bound it is not, and steps leaving this interval are replaced
+	 * by its midpoint.
+	 * @param minTree   tree of min paths
+	 * @param maxTree   tree of max paths
+	 * @param bush      bush
+	 * @param node      node, at which segments end
+	 * @param lca       node, at which segments start
+	 * @param workspace workspace of the calling thread
 	 * @return flow to be shifted
 	 */
-	protected double findFlowDelta(Network.Arc[] minTree, Network.Arc[] maxTree,
-								   Bush bush, int node, int lca) {
+	protected double findFlowDelta(int[] minTree, int[] maxTree,
+								   Bush bush, int node, int lca, Workspace workspace) {
+		
+		SegmentBuffer segments = workspace.segments;
+		segments.clear();
 		
 		double maxDeltaX = Double.POSITIVE_INFINITY;
-		Network.Arc arc = maxTree[node];
-		while (arc != null && arc.endNode != lca) {
-			if (maxDeltaX > bush.getArcFlow(arc.index))
-				maxDeltaX = bush.getArcFlow(arc.index);
+		int arc = maxTree[node];
+		while (arc != -1 && map.getEndNode(arc) != lca) {
+			if (maxDeltaX > bush.getArcFlow(arc))
+				maxDeltaX = bush.getArcFlow(arc);
+			segments.add(map, arc);
 			
-			arc = maxTree[arc.startNode];
+			arc = maxTree[map.getStartNode(arc)];
 		}
 		
 		if (maxDeltaX == 0)
 			return 0;
 		
-		// případ 0 < deltaX < μ
+		segments.startMinSegment();
+		arc = minTree[node];
+		while (arc != -1 && map.getEndNode(arc) != lca) {
+			segments.add(map, arc);
+			
+			arc = minTree[map.getStartNode(arc)];
+		}
+		
+		if (segments.costDifference <= 0)
+			return 0;
+		
+		// případ 0 < deltaX < μ, rozdíl cen je v low kladný a v high ne,
+		// pokud je horní mez ověřena
+		double low = 0;
+		double high = maxDeltaX;
+		boolean highChecked = false;
 		double deltaX = 0;
 		for (int i = 0; i < NEWTON_MAX_ITERATIONS; i++) {
+			double newDeltaX = deltaX + segments.costDifference / segments.derivative;
 			
-			double minPathFlow = 0;
-			double minPathFlowDerivative = 0;
-			arc = minTree[node];
-			while (arc != null && arc.endNode != lca) {
-				minPathFlow += arc.BPR(deltaX);
-				minPathFlowDerivative += arc.BPRderivative(deltaX);
-				
-				arc = minTree[arc.startNode];
+			if (newDeltaX >= high && !highChecked) {
+				segments.evaluate(high);
+				if (segments.costDifference >= 0)
+					return high;
+				highChecked = true;
 			}
 			
+			if (!(newDeltaX > low && newDeltaX < high))
+				newDeltaX = (low + high) / 2;
 			
-			double maxPathFlow = 0;
-			double maxPathFlowDerivative = 0;
-			arc = maxTree[node];
-			while (arc != null && arc.endNode != lca) {
-				maxPathFlow += arc.BPR(-deltaX);
-				maxPathFlowDerivative += arc.BPRderivative(-deltaX);
-				
-				arc = maxTree[arc.startNode];
-			}
+			if (Math.abs(deltaX - newDeltaX) < NEWTON_EPSILON)
+				return newDeltaX;
+			deltaX = newDeltaX;
 			
-			double newDeltaX = deltaX + (maxPathFlow - minPathFlow) /
-					(maxPathFlowDerivative + minPathFlowDerivative);
-			
-			if (Math.abs(deltaX - newDeltaX) < NEWTON_EPSILON) {
-				deltaX = Math.min(Math.max(newDeltaX, 0), maxDeltaX);
-				break;
-			} else
-				deltaX = newDeltaX;
+			segments.evaluate(deltaX);
+			if (segments.costDifference > 0)
+				low = deltaX;
+			else {
+				high = deltaX;
+				highChecked = true;
+			}
 		}
 		
-		return Math.min(Math.max(deltaX, 0), maxDeltaX);
+		return deltaX;
 	}
 	
 	/**
@@ -404,43 +1454,90 @@ public class Algorithm {
 	 * @param lca node, at which segments start
 	 * @param deltaX flow to be shifted
 	 */
-	protected void shiftFlows(Network.Arc[] minTree, Network.Arc[] maxTree,
+	protected void shiftFlows(int[] minTree, int[] maxTree,
 							  Bush bush, int node, int lca, double deltaX) {
 		
-		Network.Arc arc = minTree[node];
-		while (arc != null && arc.endNode != lca) {
-			arc.addFlow(deltaX);
-			bush.addFlow(arc.index, deltaX);
+		int arc = minTree[node];
+		while (arc != -1 && map.getEndNode(arc) != lca) {
+			addArcFlow(arc, deltaX);
+			bush.addFlow(arc, deltaX);
 			
-			arc = minTree[arc.startNode];
+			arc = minTree[map.getStartNode(arc)];
 		}
 		
 		arc = maxTree[node];
-		while (arc != null && arc.endNode != lca) {
-			arc.addFlow(-deltaX);
-			bush.addFlow(arc.index, -deltaX);
+		while (arc != -1 && map.getEndNode(arc) != lca) {
+			addArcFlow(arc, -deltaX);
+			bush.addFlow(arc, -deltaX);
 			
-			arc = maxTree[arc.startNode];
+			arc = maxTree[map.getStartNode(arc)];
 		}
 	}
 	
-	
 	/**
-	 * Removes arcs from bush that have zero flow on
-	 * the bush. Arcs in min tree are spared.
+	 * Updates costs of arcs, whose flows were changed by shifting flows
+	 * of the bush, before its next inner iteration.
 	 * @param bush bush
+	 */
+	protected void updateBushCosts(Bush bush) {
+		map.updateDirtyCosts();
+	}
+	
+	/**
+	 * Updates costs of arcs of min and max path segments
+	 * between given nodes w.r.t. current flows.
 	 * @param minTree tree of min paths
+	 * @param maxTree tree of max paths
+	 * @param node    node, at which segments end
+	 * @param lca     node, at which segments start
 	 */
-	protected void removeUnusedArcs(Bush bush, Network.Arc[] minTree) {
+	protected void updateSegmentCosts(int[] minTree, int[] maxTree, int node, int lca) {
+		int arc = minTree[node];
+		while (arc != -1 && map.getEndNode(arc) != lca) {
+			map.updateCost(arc);
+			arc = minTree[map.getStartNode(arc)];
+		}
 		
-		for (int i = 0; i < map.getArcs().length; i++) {
-			if (bush.getArcFlow(i) <= 0)
-				bush.removeArc(i);
+		arc = maxTree[node];
+		while (arc != -1 && map.getEndNode(arc) != lca) {
+			map.updateCost(arc);
+			arc = maxTree[map.getStartNode(arc)];
 		}
+	}
+	
+	/**
+	 * Adds flow to arc of the network when flows are shifted.
+	 * @param arc   index of arc of the network
+	 * @param delta flow to be added
+	 */
+	protected void addArcFlow(int arc, double delta) {
+		map.addFlow(arc, delta);
+	}
+	
+	
+	/**
+	 * Removes arcs from bush that have zero flow on the bush. Arcs
+	 * in min tree are spared. Only arcs starting in nodes of the
+	 * topological order are visited, removing arcs keeps the order valid.
+	 * @param bush bush
+	 * @param minTree tree of min paths, i.e. index of arc to each node
+	 */
+	protected void removeUnusedArcs(Bush bush, int[] minTree) {
+		int[] order = topologicalOrder(bush);
 		
-		for (Network.Arc arc : minTree) {
-			if (arc != null)
-				bush.addArc(arc.index);
+		for (int startNode : order) {
+			int last = map.lastArcOf(startNode);
+			
+			for (int i = bush.positionOf(map.firstArcOf(startNode));
+				 i < bush.size() && bush.getArc(i) < last; i++) {
+				if (!bush.arcExistsAt(i) || bush.getFlow(i) > 0)
+					continue;
+				int arc = bush.getArc(i);
+				if (minTree[map.getEndNode(arc)] != arc)
+					bush.removeArcAt(i);
+			}
 		}
+		
+		bush.compact();
 	}
 }
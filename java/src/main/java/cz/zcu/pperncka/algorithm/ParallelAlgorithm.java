@@ -4,11 +4,16 @@ import cz.zcu.pperncka.Utils;
 import cz.zcu.pperncka.data.*;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.List;
 import java.util.Locale;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.RecursiveAction;
 import java.util.concurrent.TimeUnit;
 
 /** Class representing parallel Algorithm B with its input and inner state. */
@@ -17,8 +22,44 @@ public class ParallelAlgorithm extends Algorithm {
 	/** Number of worker threads. */
 	protected final int threads;
 	
-	/** Thread pool for executing tasks. */
-	protected final ExecutorService threadPool;
+	/** Thread pool for executing tasks, created again by the next start after it is stopped. */
+	protected ExecutorService threadPool;
+	
+	/**
+	 * If true, worker threads also shift flows of their bushes,
+	 * otherwise flows are shifted sequentially by the main thread.
+	 */
+	protected boolean concurrentShifting = false;
+	
+	/**
+	 * If true, bushes are processed by a work stealing pool
+	 * without batches, see {@link #setWorkStealing(boolean)}.
+	 */
+	protected boolean workStealing = false;
+	
+	/**
+	 * If true, trees of the next batch are prepared while flows
+	 * of the current batch are shifted, see {@link #setPipelining(boolean)}.
+	 */
+	protected boolean pipelining = false;
+	
+	/**
+	 * Max. relative change of cost of any arc after a batch, for
+	 * which prepared trees of the next batch are still used.
+	 */
+	protected double pipelineTolerance = 0.01;
+	
+	/** Pool for work stealing, created on demand. */
+	protected ForkJoinPool forkJoinPool = null;
+	
+	/** Workspace of each thread of {@code forkJoinPool}. */
+	protected final ThreadLocal<Workspace> workspaces;
+	
+	/** Indices of bushes sorted by duration of their last processing, descending. */
+	protected int[] origins;
+	
+	/** Duration of the last processing of each bush in nanoseconds, by index of the bush. */
+	protected long[] bushTimes;
 	
 	/**
 	 * Creates new instance representing parallel Algorithm B with given input.
@@ -35,33 +76,100 @@ public class ParallelAlgorithm extends Algorithm {
 		
 		this.threads = threads;
 		this.threadPool = Executors.newFixedThreadPool(threads);
+		this.workspaces = ThreadLocal.withInitial(() -> new Workspace(map.nodes));
+	}
+	
+	/**
+	 * Sets whether worker threads shift flows concurrently. Flows of
+	 * arcs are then updated atomically and the Newton method of each
+	 * worker sees flows shifted by other workers as soon as they are
+	 * shifted. Costs of arcs, from which trees are found, are updated
+	 * after each batch of bushes in both modes. Results are thus not
+	 * deterministic in the concurrent mode.
+	 * @param concurrentShifting if true, flows are shifted by worker threads
+	 */
+	public void setConcurrentShifting(boolean concurrentShifting) {
+		this.concurrentShifting = concurrentShifting;
+	}
+	
+	/**
+	 * Sets whether bushes are processed by a work stealing pool.
+	 * In this mode, each iteration processes all bushes at once,
+	 * bushes which took longest in the previous iteration are
+	 * scheduled first and idle threads steal remaining bushes
+	 * from busy ones. There are no barriers between batches, so
+	 * flows are shifted concurrently (see {@link #setConcurrentShifting(boolean)})
+	 * and each thread updates costs of arcs of its bush after
+	 * processing it instead of updating costs after each batch.
+	 * Adaptive scheduling, see {@link #setAdaptiveScheduling(boolean)},
+	 * is supported only in this mode, in batch modes all bushes are
+	 * processed in every iteration.
+	 * @param workStealing if true, bushes are processed by work stealing
+	 */
+	public void setWorkStealing(boolean workStealing) {
+		this.workStealing = workStealing;
+	}
+	
+	/**
+	 * Sets whether trees of the next batch of bushes are prepared by
+	 * worker threads while the main thread shifts flows of the current
+	 * batch, see {@link #processBatchesPipelined(int[], Workspace[][])}.
+	 * Flows are shifted only by the main thread, so pipelining is
+	 * exclusive with concurrent shifting and work stealing. If they
+	 * are set together, work stealing is used before pipelining and
+	 * pipelining before concurrent shifting.
+	 * @param pipelining if true, batches are pipelined
+	 */
+	public void setPipelining(boolean pipelining) {
+		this.pipelining = pipelining;
+	}
+	
+	/**
+	 * Sets max. relative change of cost of any arc after a batch,
+	 * for which trees prepared for the next batch are still used.
+	 * @param pipelineTolerance tolerance, 0 to always find trees again
+	 */
+	public void setPipelineTolerance(double pipelineTolerance) {
+		this.pipelineTolerance = pipelineTolerance;
 	}
 	
 	@Override
 	public Network.Arc[] start() {
+		if (threadPool.isShutdown())
+			threadPool = Executors.newFixedThreadPool(threads);
+		
 		map.updateCosts();
-		Collection<Callable<Void>> jobs = new ArrayList<>();
-		for (int root = 0; root < bushes.length; root++) {
+		if (resumeFile != null)
+			resume();
+		else if (bushes == null) {
+			int[] roots = demandOrigins();
+			bushes = new Bush[roots.length];
+			Collection<Callable<Void>> jobs = new ArrayList<>();
+			for (int i = 0; i < roots.length; i++) {
+				
+				int index = i;
+				jobs.add(() -> {
+					bushes[index] = createBush(roots[index], workspaces.get());
+					return null;
+				});
+			}
+			Utils.tryInvokeAll(threadPool, jobs);
 			
-			int finalRoot = root;
-			jobs.add(() -> {
-				bushes[finalRoot] = createBush(finalRoot);
-				return null;
-			});
+			for (Bush bush : bushes)
+				for (int i = 0; i < bush.size(); i++)
+					map.addFlow(bush.getArc(i), bush.getFlow(i));
 		}
-		Utils.tryInvokeAll(threadPool, jobs);
-		
-		
-		Network.Arc[] mapArcs = map.getArcs();
-		for (Bush bush : bushes)
-			for (Network.Arc mapArc : mapArcs)
-				mapArc.addFlow(bush.getArcFlow(mapArc.index));
 		map.updateCosts();
+		repairBushes();
+		applyDemandChange();
 		
 		
 		System.out.println("===================================");
 		System.out.print("Static traffic assignment algorithm B - ");
-		System.out.println("Parallel version (" + threads + " threads)");
+		System.out.println("Parallel version (" + threads + " threads"
+				+ (workStealing ? ", work stealing)"
+				: pipelining ? ", pipelined)"
+				: concurrentShifting ? ", concurrent shifting)" : ")"));
 		System.out.println("Max. iterations: " + iterations);
 		if (relativeGap != 0)
 			System.out.printf(Locale.ROOT, "Relative gap: %.15f%n", relativeGap);
@@ -71,97 +179,62 @@ public class ParallelAlgorithm extends Algorithm {
 		
 		
 		double currentRelativeGap = Double.POSITIVE_INFINITY;
-		double maxLb = Double.NEGATIVE_INFINITY;
-		int currentIteration = 0;
+		int currentIteration = firstIteration;
 		
-		while ((currentIteration < iterations && this.relativeGap == 0) ||
-				(currentIteration < iterations && currentRelativeGap > this.relativeGap)) {
-			System.out.println("Iteration " + currentIteration);
-			
-			for (int i = 0; i < bushes.length; i += threads) {
-				
-				Pair<Network.Arc[], Network.Arc[]>[] trees = new Pair[threads];
-				int[][] lcas = new int[threads][];
-				
-				
-				Collection<Callable<Void>> jobs2 = new ArrayList<>();
-				for (int j = 0; j < threads; j++) {
-					if (i + j == bushes.length)
-						break;
-					Bush bush = bushes[i + j];
-					
-					int J = j;
-					jobs2.add(() -> {
-						improveBush(bush);
-						trees[J] = getTrees(bush);
-						
-						lcas[J] = new int[map.nodes];
-						for (int node = 0; node < map.nodes; node++)
-							lcas[J][node] = LCA(trees[J].first(), trees[J].second(), node);
-						
-						return null;
-					});
-				}
-				Utils.tryInvokeAll(threadPool, jobs2);
-				
-				
-				for (int j = 0; j < threads; j++) {
-					if (i + j == bushes.length)
-						break;
-					Bush bush = bushes[i + j];
-					
-					var minTree = trees[j].first();
-					var maxTree = trees[j].second();
-					for (int node = 0; node < map.nodes; node++) {
-						int lca = lcas[j][node];
-						if (lca == -1)
-							continue;
-						
-						double deltaX = findFlowDelta(minTree, maxTree, bush, node, lca);
-						if (deltaX == 0)
-							continue;
-						
-						shiftFlows(minTree, maxTree, bush, node, lca, deltaX);
-					}
-				}
-				
+		// dvě sady pracovních prostorů, aby se při zřetězení mohla
+		// připravovat další dávka, zatímco se posouvají toky aktuální
+		Workspace[][] workspaces = new Workspace[2][threads];
+		for (int j = 0; j < threads; j++) {
+			workspaces[0][j] = new Workspace(map.nodes);
+			workspaces[1][j] = new Workspace(map.nodes);
+		}
+		
+		try {
+			while ((currentIteration < iterations && this.relativeGap == 0) ||
+					(currentIteration < iterations && currentRelativeGap > this.relativeGap)) {
+				System.out.println("Iteration " + currentIteration);
 				
-				Collection<Callable<Void>> jobs3 = new ArrayList<>();
-				for (int j = 0; j < threads; j++) {
-					if (i + j == bushes.length)
-						break;
-					Bush bush = bushes[i + j];
-					
-					int J = j;
-					jobs3.add(() -> {
-						removeUnusedArcs(bush, trees[J].first());
-						return null;
-					});
+				if (workStealing) {
+					scheduleOrigins(currentIteration);
+					processAllBushes();
+					map.updateCosts();
+				} else {
+					int[] scheduled = scheduledBushes(currentIteration);
+					if (pipelining)
+						processBatchesPipelined(scheduled, workspaces);
+					else
+						for (int i = 0; i < scheduled.length; i += threads) {
+							if (concurrentShifting) {
+								processBatchConcurrently(scheduled, i, workspaces[0]);
+								map.updateCosts();
+							} else {
+								processBatch(scheduled, i, workspaces[0]);
+								map.updateDirtyCosts();
+							}
+						}
 				}
-				Utils.tryInvokeAll(threadPool, jobs3);
 				
-				map.updateCosts();
-			}
-			
-			double of = map.objectiveFunction();
-			System.out.printf(Locale.ROOT, "Objective function: %.15f%n", of);
-			
-			if (this.relativeGap != 0) {
-				double gap = map.gap(odMatrix, threadPool);
-				double lb = of + gap;
-				if (lb > maxLb)
-					maxLb = lb;
+				double of = map.objectiveFunction();
+				System.out.printf(Locale.ROOT, "Objective function: %.15f%n", of);
 				
-				currentRelativeGap = -gap / Math.abs(maxLb);
+				currentRelativeGap = checkConvergence(currentIteration, of, currentRelativeGap);
+				if (checkpointWriter != null)
+					checkpointWriter.write(map, bushes, currentIteration + 1, maxLb);
+				if (flowsWriter != null)
+					flowsWriter.write(map, currentIteration + 1);
 				
-				System.out.printf(Locale.ROOT, "Gap: %.15f%n", gap);
-				System.out.printf(Locale.ROOT, "Relative gap: %.15f%n", currentRelativeGap);
+				System.out.println("-----------------------------------");
+				currentIteration++;
 			}
-			
-			System.out.println("-----------------------------------");
-			currentIteration++;
+		} finally {
+			stopGapExecutor();
+			stopWriters();
 		}
 		
+		if (forkJoinPool != null) {
+			forkJoinPool.shutdown();
+			forkJoinPool = null;
+		}
 		threadPool.shutdown();
 		try {
 			if (!threadPool.awaitTermination(10, TimeUnit.MILLISECONDS))
@@ -172,4 +245,334 @@ public class ParallelAlgorithm extends Algorithm {
 		
 		return map.getArcs();
 	}
+	
+	/**
+	 * Schedules origins for given iteration, see {@link #scheduleOrigins(int)},
+	 * and returns indices of bushes which are processed in it. Batches
+	 * are formed from consecutive scheduled bushes.
+	 * @param iteration number of the iteration
+	 * @return indices to {@code bushes} of scheduled bushes in ascending order
+	 */
+	protected int[] scheduledBushes(int iteration) {
+		scheduleOrigins(iteration);
+		
+		int[] scheduled = new int[bushes.length];
+		int count = 0;
+		for (int i = 0; i < bushes.length; i++)
+			if (isScheduled(bushes[i].root))
+				scheduled[count++] = i;
+		
+		return Arrays.copyOf(scheduled, count);
+	}
+	
+	/**
+	 * Processes a batch of bushes. Worker threads improve the bushes and
+	 * find their trees and divergence nodes, then the main thread shifts
+	 * flows sequentially and finally workers remove unused arcs.
+	 * @param indices    indices of processed bushes, batches are their consecutive ranges
+	 * @param first      position of the first bush of the batch in {@code indices}
+	 * @param workspaces workspace for each bush of the batch
+	 */
+	protected void processBatch(int[] indices, int first, Workspace[] workspaces) {
+		Utils.tryInvokeAll(threadPool, prepareJobs(indices, first, workspaces, true));
+		shiftBatch(indices, first, workspaces);
+		Utils.tryInvokeAll(threadPool, removeJobs(indices, first, workspaces));
+	}
+	
+	/**
+	 * Processes all batches of bushes such that worker threads prepare
+	 * trees of the next batch while the main thread shifts flows of the
+	 * current batch. Next batch is thus improved and its trees are found
+	 * w.r.t. costs before shifting the current batch. After the current
+	 * batch, costs are updated and trees of those bushes of the next
+	 * batch, which contain an arc whose cost changed relatively more
+	 * than {@code pipelineTolerance}, are found again. Bushes of the
+	 * next batch are not improved again.
+	 * @param indices    indices of processed bushes, batches are their consecutive ranges
+	 * @param workspaces two sets of workspaces for each bush of a batch
+	 */
+	protected void processBatchesPipelined(int[] indices, Workspace[][] workspaces) {
+		Utils.tryInvokeAll(threadPool, prepareJobs(indices, 0, workspaces[0], true));
+		
+		int[] changedArcs = new int[map.getArcs().length];
+		int current = 0;
+		for (int i = 0; i < indices.length; i += threads) {
+			int next = i + threads;
+			
+			List<Future<Void>> futures = new ArrayList<>();
+			if (next < indices.length)
+				for (Callable<Void> job : prepareJobs(indices, next, workspaces[1 - current], true))
+					futures.add(threadPool.submit(job));
+			
+			shiftBatch(indices, i, workspaces[current]);
+			for (Callable<Void> job : removeJobs(indices, i, workspaces[current]))
+				futures.add(threadPool.submit(job));
+			Utils.tryWaitAll(futures);
+			
+			int changed = map.updateDirtyCosts(pipelineTolerance, changedArcs);
+			if (next < indices.length && changed > 0) {
+				Collection<Callable<Void>> jobs = prepareJobs(indices, next, workspaces[1 - current], false);
+				
+				// stromy se hledají znovu jen pro keře se změněnou hranou
+				int j = 0;
+				for (var it = jobs.iterator(); it.hasNext(); j++) {
+					it.next();
+					if (!containsAnyArc(bushes[indices[next + j]], changedArcs, changed))
+						it.remove();
+				}
+				Utils.tryInvokeAll(threadPool, jobs);
+			}
+			
+			current = 1 - current;
+		}
+	}
+	
+	/**
+	 * Returns if the bush contains any of given arcs.
+	 * @param bush  bush
+	 * @param arcs  array of indices of arcs
+	 * @param count number of arcs in {@code arcs}
+	 * @return true, if any of the arcs exists in the bush, false otherwise
+	 */
+	protected boolean containsAnyArc(Bush bush, int[] arcs, int count) {
+		for (int i = 0; i < count; i++)
+			if (bush.arcExists(arcs[i]))
+				return true;
+		
+		return false;
+	}
+	
+	/**
+	 * Creates jobs which find trees and divergence nodes of each bush
+	 * of a batch. Divergence nodes are stored to {@code nodeResults}.
+	 * @param indices    indices of processed bushes, batches are their consecutive ranges
+	 * @param first      position of the first bush of the batch in {@code indices}
+	 * @param workspaces workspace for each bush of the batch
+	 * @param improve    if true, bushes are improved before finding trees
+	 * @return jobs, one for each bush of the batch
+	 */
+	protected Collection<Callable<Void>> prepareJobs(int[] indices, int first, Workspace[] workspaces,
+													 boolean improve) {
+		Collection<Callable<Void>> jobs = new ArrayList<>();
+		for (int j = 0; j < threads; j++) {
+			if (first + j == indices.length)
+				break;
+			Bush bush = bushes[indices[first + j]];
+			
+			Workspace workspace = workspaces[j];
+			jobs.add(() -> {
+				if (improve)
+					improveBush(bush, workspace);
+				getTrees(bush, workspace);
+				measureExcessCost(bush, workspace);
+				divergenceNodes(bush, workspace);
+				
+				return null;
+			});
+		}
+		
+		return jobs;
+	}
+	
+	/**
+	 * Shifts flows of each bush of a batch sequentially using trees
+	 * prepared by {@link #prepareJobs}, nodes are visited in reverse
+	 * topological order, if set by {@link #setReverseSweep(boolean)}.
+	 * Costs are updated right after each shift only without pipelining,
+	 * because pipelined workers read costs while the batch is shifted
+	 * and changed costs are detected by {@code updateDirtyCosts}.
+	 * @param indices    indices of processed bushes, batches are their consecutive ranges
+	 * @param first      position of the first bush of the batch in {@code indices}
+	 * @param workspaces workspace for each bush of the batch
+	 */
+	protected void shiftBatch(int[] indices, int first, Workspace[] workspaces) {
+		for (int j = 0; j < threads; j++) {
+			if (first + j == indices.length)
+				break;
+			
+			shiftNodes(bushes[indices[first + j]], workspaces[j], reverseSweep, reverseSweep && !pipelining);
+		}
+	}
+	
+	/**
+	 * Creates jobs which remove unused arcs from each bush of a batch.
+	 * @param indices    indices of processed bushes, batches are their consecutive ranges
+	 * @param first      position of the first bush of the batch in {@code indices}
+	 * @param workspaces workspace for each bush of the batch
+	 * @return jobs, one for each bush of the batch
+	 */
+	protected Collection<Callable<Void>> removeJobs(int[] indices, int first, Workspace[] workspaces) {
+		Collection<Callable<Void>> jobs = new ArrayList<>();
+		for (int j = 0; j < threads; j++) {
+			if (first + j == indices.length)
+				break;
+			Bush bush = bushes[indices[first + j]];
+			
+			Workspace workspace = workspaces[j];
+			jobs.add(() -> {
+				removeUnusedArcs(bush, workspace.minTree);
+				return null;
+			});
+		}
+		
+		return jobs;
+	}
+	
+	/**
+	 * Processes a batch of bushes, each in its own worker thread.
+	 * Workers improve their bushes, find trees and shift flows.
+	 * @param indices    indices of processed bushes, batches are their consecutive ranges
+	 * @param first      position of the first bush of the batch in {@code indices}
+	 * @param workspaces workspace for each bush of the batch
+	 */
+	protected void processBatchConcurrently(int[] indices, int first, Workspace[] workspaces) {
+		Collection<Callable<Void>> jobs = new ArrayList<>();
+		for (int j = 0; j < threads; j++) {
+			if (first + j == indices.length)
+				break;
+			Bush bush = bushes[indices[first + j]];
+			
+			Workspace workspace = workspaces[j];
+			jobs.add(() -> {
+				processBush(bush, workspace);
+				return null;
+			});
+		}
+		Utils.tryInvokeAll(threadPool, jobs);
+	}
+	
+	/**
+	 * Processes all bushes by work stealing pool, bushes with the
+	 * longest duration of the last processing are scheduled first.
+	 */
+	protected void processAllBushes() {
+		if (forkJoinPool == null)
+			forkJoinPool = new ForkJoinPool(threads);
+		
+		// nové keře po změně poptávky
+		if (origins == null || origins.length != bushes.length) {
+			origins = new int[bushes.length];
+			bushTimes = new long[bushes.length];
+		}
+		
+		// doplněk doby ve vyšších bitech (nejdelší první), index keře v nižších
+		long[] keys = new long[bushes.length];
+		for (int i = 0; i < keys.length; i++)
+			keys[i] = ((Integer.MAX_VALUE - Math.min(bushTimes[i], Integer.MAX_VALUE)) << 32) | i;
+		Arrays.sort(keys);
+		for (int i = 0; i < keys.length; i++)
+			origins[i] = (int) keys[i];
+		
+		forkJoinPool.invoke(new BushesTask(0, origins.length));
+	}
+	
+	/**
+	 * Processes bush with given index, updates costs of its arcs
+	 * and measures the duration of its processing. Other threads
+	 * shift flows meanwhile, so the updated costs, and costs seen by
+	 * bushes processed at the same time, may be stale, see
+	 * {@link Network#updateCost(int)}. All costs are consistent only
+	 * after {@link Network#updateCosts()} following all bushes.
+	 * @param index index of the bush in {@code bushes}
+	 */
+	protected void processOrigin(int index) {
+		Bush bush = bushes[index];
+		if (!isScheduled(bush.root))
+			return;
+		
+		long startTime = System.nanoTime();
+		
+		Workspace workspace = workspaces.get();
+		shiftBushFlows(bush, workspace);
+		
+		// toky se mění jen na hranách keře, před odebráním nepoužitých hran
+		for (int i = 0; i < bush.size(); i++)
+			if (bush.arcExistsAt(i))
+				map.updateCost(bush.getArc(i));
+		
+		removeUnusedArcs(bush, workspace.minTree);
+		
+		bushTimes[index] = System.nanoTime() - startTime;
+	}
+	
+	/**
+	 * Task processing a range of {@code origins}. The range is split
+	 * in halves, so that idle threads can steal the second half.
+	 */
+	protected class BushesTask extends RecursiveAction {
+		
+		/** Version of serialized form of the task. */
+		private static final long serialVersionUID = 1L;
+		
+		/** Index of the first origin of the range (inclusive). */
+		private final int first;
+		
+		/** Index of the last origin of the range (exclusive). */
+		private final int last;
+		
+		/**
+		 * Creates task processing given range of {@code origins}.
+		 * @param first index of the first origin (inclusive)
+		 * @param last  index of the last origin (exclusive)
+		 */
+		public BushesTask(int first, int last) {
+			this.first = first;
+			this.last = last;
+		}
+		
+		@Override
+		protected void compute() {
+			if (last - first == 1) {
+				processOrigin(origins[first]);
+				return;
+			}
+			
+			int middle = (first + last) >>> 1;
+			invokeAll(new BushesTask(first, middle), new BushesTask(middle, last));
+		}
+	}
+	
+	@Override
+	protected void repairBushes(int[] indices) {
+		Workspace[] batchWorkspaces = new Workspace[threads];
+		for (int j = 0; j < threads; j++)
+			batchWorkspaces[j] = new Workspace(map.nodes);
+		
+		for (int i = 0; i < indices.length; i += threads) {
+			// atomické přičítání toků neoznačuje změněné hrany
+			if (concurrentShifting || workStealing) {
+				processBatchConcurrently(indices, i, batchWorkspaces);
+				map.updateCosts();
+			} else {
+				processBatch(indices, i, batchWorkspaces);
+				map.updateDirtyCosts();
+			}
+		}
+	}
+	
+	@Override
+	protected void updateBushCosts(Bush bush) {
+		// více vláken najednou, proto bez množiny změněných hran; ostatní
+		// vlákna mezitím posouvají toky, ceny tak mohou být zastaralé
+		for (int i = 0; i < bush.size(); i++)
+			if (bush.arcExistsAt(i))
+				map.updateCost(bush.getArc(i));
+	}
+	
+	@Override
+	protected double gap(Network network) {
+		// gap na pozadí počítá jen vlákno gapExecutor, aby nebralo vlákna dávkám
+		if (asyncGap)
+			return network.gap(odMatrix);
+		
+		return network.gap(odMatrix, threadPool, threads);
+	}
+	
+	@Override
+	protected void addArcFlow(int arc, double delta) {
+		if (concurrentShifting || workStealing)
+			map.addFlowAtomic(arc, delta);
+		else
+			map.addFlow(arc, delta);
+	}
 }
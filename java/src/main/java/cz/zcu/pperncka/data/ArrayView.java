@@ -12,7 +12,7 @@ public class ArrayView<T> implements Iterator<T>, Iterable<T> {
 	private final T[] source;
 	
 	/** Index to source representing last element of this subarray (exclusive). */
-	private final int last;
+	private int last;
 	
 	/** Index to source representing first element of this subarray (inclusive). */
 	private int first;
@@ -30,6 +30,19 @@ public class ArrayView<T> implements Iterator<T>, Iterable<T> {
 		this.last = last;
 	}
 	
+	/**
+	 * Moves this subarray to the range first (inclusive) to last
+	 * (exclusive) of the same source array, so it can be reused.
+	 * @param first index to source representing first element of subarray
+	 * @param last  index to source representing element after the last element of subarray
+	 * @return this subarray
+	 */
+	public ArrayView<T> reset(int first, int last) {
+		this.first = first;
+		this.last = last;
+		return this;
+	}
+	
 	@Override
 	public boolean hasNext() {
 		return first < last;
@@ -2,7 +2,9 @@ package cz.zcu.pperncka.data;
 
 /**
  * Class representing a bush constructed from a {@code Network}.
- * Bush is an acyclic subgraph with only one root.
+ * Bush is an acyclic subgraph with only one root. Arcs and their
+ * flows are stored in dense arrays indexed by arc index, see
+ * {@link SparseBush} for storage proportional to size of the bush.
  */
 public class Bush {
 	
@@ -18,6 +20,12 @@ public class Bush {
 	/** Root of this bush. */
 	public final int root;
 	
+	/**
+	 * Nodes reachable from root in topological order of
+	 * this bush, null if the order is not known.
+	 */
+	private int[] topologicalOrder = null;
+	
 	/**
 	 * Constructor creating bush with given root and
 	 * supporting given number of edges.
@@ -30,22 +38,60 @@ public class Bush {
 		this.root = root;
 	}
 	
+	/**
+	 * Constructor for subclasses with their own storage of arcs.
+	 * @param root node from which was this bush created
+	 */
+	protected Bush(int root) {
+		this.arcFlags = null;
+		this.flows = null;
+		this.root = root;
+	}
+	
 	/**
 	 * Adds arc to the bush.
 	 * @param arcIndex index of added arc
 	 */
 	public void addArc(int arcIndex) {
+		if (arcFlags[arcIndex])
+			return;
+		
 		arcFlags[arcIndex] = true;
+		topologicalOrder = null;
 	}
 	
 	/**
-	 * Removes arc from the bush.
+	 * Removes arc from the bush. Removing an arc
+	 * keeps the topological order valid.
 	 * @param arcIndex index of removed arc
 	 */
 	public void removeArc(int arcIndex) {
 		arcFlags[arcIndex] = false;
 	}
 	
+	/** Removes all arcs without positive flow from the bush. */
+	public void removeArcsWithoutFlow() {
+		for (int i = 0; i < flows.length; i++)
+			if (flows[i] <= 0)
+				arcFlags[i] = false;
+	}
+	
+	/**
+	 * Removes stored arc on given position from the bush. Positions
+	 * of stored arcs are kept until {@link #compact()} is called.
+	 * @param position position of stored arc, from 0 to {@link #size()} (exclusive)
+	 */
+	public void removeArcAt(int position) {
+		arcFlags[position] = false;
+	}
+	
+	/**
+	 * Releases storage of removed arcs without flow on the bush,
+	 * which may change positions of stored arcs.
+	 */
+	public void compact() {
+	}
+	
 	/**
 	 * Returns if arc exists in this bush.
 	 * @param arcIndex index of arc
@@ -72,4 +118,68 @@ public class Bush {
 	public void addFlow(int arcIndex, double flow) {
 		flows[arcIndex] += flow;
 	}
+	
+	/**
+	 * Returns number of stored arcs. Stored arcs are accessible
+	 * by their position, which is the index of arc here.
+	 * @return number of stored arcs
+	 */
+	public int size() {
+		return flows.length;
+	}
+	
+	/**
+	 * Returns position of the first stored arc with index
+	 * greater or equal to given index. Arcs starting in the
+	 * same node are thus accessible by a sequential walk.
+	 * @param arcIndex index of arc
+	 * @return position of stored arc, {@link #size()} if there is none
+	 */
+	public int positionOf(int arcIndex) {
+		return arcIndex;
+	}
+	
+	/**
+	 * Returns if stored arc on given position is in this bush.
+	 * @param position position of stored arc, from 0 to {@link #size()} (exclusive)
+	 * @return true, if arc exists in the bush, false otherwise
+	 */
+	public boolean arcExistsAt(int position) {
+		return arcFlags[position];
+	}
+	
+	/**
+	 * Returns index of stored arc on given position.
+	 * @param position position of stored arc, from 0 to {@link #size()} (exclusive)
+	 * @return index of arc
+	 */
+	public int getArc(int position) {
+		return position;
+	}
+	
+	/**
+	 * Returns flow on the bush of stored arc on given position.
+	 * @param position position of stored arc, from 0 to {@link #size()} (exclusive)
+	 * @return flow on the bush
+	 */
+	public double getFlow(int position) {
+		return flows[position];
+	}
+	
+	/**
+	 * Returns nodes of this bush in topological order. The order
+	 * is invalidated by adding a new arc to this bush.
+	 * @return nodes in topological order, null if the order is not known
+	 */
+	public int[] getTopologicalOrder() {
+		return topologicalOrder;
+	}
+	
+	/**
+	 * Sets topological order of nodes of this bush.
+	 * @param topologicalOrder nodes reachable from root in topological order
+	 */
+	public void setTopologicalOrder(int[] topologicalOrder) {
+		this.topologicalOrder = topologicalOrder;
+	}
 }
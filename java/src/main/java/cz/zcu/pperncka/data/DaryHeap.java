@@ -0,0 +1,141 @@
+package cz.zcu.pperncka.data;
+
+import java.util.Arrays;
+
+/**
+ * A min priority queue implementation using a d-ary heap. Position
+ * of each element in the heap is remembered, so decreasing priority
+ * of an element takes logarithmic time.
+ */
+public class DaryHeap implements PriorityQueue {
+	
+	/** Number of children of each node of the heap. */
+	private final int arity;
+	
+	/** Array of elements in the heap. */
+	private final int[] heap;
+	
+	/** Array of priorities of elements in {@code heap}. */
+	private final double[] priorities;
+	
+	/** Array of positions of elements in {@code heap}, -1 if element is not in the heap. */
+	private final int[] positions;
+	
+	/** Current size of queue. */
+	private int count = 0;
+	
+	/**
+	 * Creates d-ary heap of constant size.
+	 * @param size  number of possible elements
+	 * @param arity number of children of each node of the heap
+	 */
+	public DaryHeap(int size, int arity) {
+		this.arity = arity;
+		this.heap = new int[size];
+		this.priorities = new double[size];
+		this.positions = new int[size];
+		Arrays.fill(positions, -1);
+	}
+	
+	@Override
+	public void add(int value, double priority) {
+		heap[count] = value;
+		priorities[count] = priority;
+		positions[value] = count;
+		fixUp(count++);
+	}
+	
+	@Override
+	public int popMin() {
+		int min = heap[0];
+		positions[min] = -1;
+		
+		count--;
+		if (count > 0) {
+			heap[0] = heap[count];
+			priorities[0] = priorities[count];
+			positions[heap[0]] = 0;
+			fixDown(0);
+		}
+		
+		return min;
+	}
+	
+	@Override
+	public void decreasePriority(int value, double newPriority) {
+		int n = positions[value];
+		priorities[n] = newPriority;
+		fixUp(n);
+	}
+	
+	@Override
+	public boolean isEmpty() {
+		return count == 0;
+	}
+	
+	/**
+	 * Fixes the heap in upwards motion. Element is moved
+	 * up by shifting parents down instead of swapping.
+	 * @param n index/starting point
+	 */
+	private void fixUp(int n) {
+		int value = heap[n];
+		double priority = priorities[n];
+		
+		while (n != 0) {
+			int p = (n - 1) / arity;
+			if (priorities[p] <= priority)
+				break;
+			
+			move(p, n);
+			n = p;
+		}
+		
+		heap[n] = value;
+		priorities[n] = priority;
+		positions[value] = n;
+	}
+	
+	/**
+	 * Fixes the heap in downwards motion. Element is moved
+	 * down by shifting children up instead of swapping.
+	 * @param n index/starting point
+	 */
+	private void fixDown(int n) {
+		int value = heap[n];
+		double priority = priorities[n];
+		
+		while (true) {
+			int first = arity * n + 1;
+			if (first >= count)
+				break;
+			
+			int last = Math.min(first + arity, count);
+			int j = first;
+			for (int i = first + 1; i < last; i++)
+				if (priorities[i] < priorities[j])
+					j = i;
+			
+			if (priority <= priorities[j])
+				break;
+			
+			move(j, n);
+			n = j;
+		}
+		
+		heap[n] = value;
+		priorities[n] = priority;
+		positions[value] = n;
+	}
+	
+	/**
+	 * Moves element and its priority to another index of the heap.
+	 * @param from index of moved element
+	 * @param to   index to which the element is moved
+	 */
+	private void move(int from, int to) {
+		heap[to] = heap[from];
+		priorities[to] = priorities[from];
+		positions[heap[to]] = to;
+	}
+}
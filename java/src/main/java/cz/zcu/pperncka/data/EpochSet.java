@@ -0,0 +1,81 @@
+package cz.zcu.pperncka.data;
+
+import java.util.Arrays;
+
+/**
+ * A set of integers from {@code {0,...,size-1}}, where size is given
+ * on creation of the set. Elements are remembered in order of their
+ * addition and the set is cleared in constant time, an element is in
+ * the set only if it was marked with the current epoch.
+ */
+public class EpochSet {
+	
+	/** Elements in the set in order of addition. */
+	private final int[] elements;
+	
+	/** Epoch in which each integer was added, element is in the set if it equals {@code epoch}. */
+	private final int[] epochs;
+	
+	/** Current epoch. */
+	private int epoch = 1;
+	
+	/** Number of elements in the set. */
+	private int count = 0;
+	
+	/**
+	 * Creates an empty set.
+	 * @param size number of possible elements
+	 */
+	public EpochSet(int size) {
+		this.elements = new int[size];
+		this.epochs = new int[size];
+	}
+	
+	/**
+	 * Adds integer to this set, if it is not already present.
+	 * @param x integer added to set
+	 */
+	public void add(int x) {
+		if (epochs[x] == epoch)
+			return;
+		
+		epochs[x] = epoch;
+		elements[count++] = x;
+	}
+	
+	/**
+	 * Checks, if this set contains integer.
+	 * @param x integer
+	 * @return true, if this set contains given integer, false otherwise
+	 */
+	public boolean contains(int x) {
+		return epochs[x] == epoch;
+	}
+	
+	/**
+	 * Returns number of elements in this set.
+	 * @return number of elements
+	 */
+	public int size() {
+		return count;
+	}
+	
+	/**
+	 * Returns element of this set in order of addition.
+	 * @param i order of element, from 0 to {@link #size()} (exclusive)
+	 * @return i-th added element
+	 */
+	public int get(int i) {
+		return elements[i];
+	}
+	
+	/** Removes all elements from this set. */
+	public void clear() {
+		count = 0;
+		epoch++;
+		if (epoch == Integer.MAX_VALUE) {
+			Arrays.fill(epochs, 0);
+			epoch = 1;
+		}
+	}
+}
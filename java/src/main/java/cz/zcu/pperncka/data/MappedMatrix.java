@@ -0,0 +1,96 @@
+package cz.zcu.pperncka.data;
+
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+
+/**
+ * Square matrix in compressed sparse row format viewing buffers, e.g.
+ * sections of a memory-mapped file, so that it is loaded without
+ * copying and processes reading the same file share its pages. The
+ * buffers are only read. Setting an element first copies the matrix
+ * into a {@link SparseMatrix}, which is then used instead.
+ */
+public class MappedMatrix extends Matrix {
+	
+	/** Offsets of rows to {@code columns} and {@code values}, of length n + 1. */
+	private final IntBuffer offsets;
+	
+	/** Columns of stored elements, sorted in each row. */
+	private final IntBuffer columns;
+	
+	/** Values of stored elements. */
+	private final DoubleBuffer values;
+	
+	/** Copy of this matrix after the first change, null before. */
+	private SparseMatrix copy = null;
+	
+	/**
+	 * Constructor creating matrix viewing given buffers.
+	 * @param n       rank of matrix
+	 * @param offsets offsets of rows, of length n + 1
+	 * @param columns columns of elements, sorted in each row
+	 * @param values  values of elements
+	 */
+	public MappedMatrix(int n, IntBuffer offsets, IntBuffer columns, DoubleBuffer values) {
+		super(n, null);
+		this.offsets = offsets;
+		this.columns = columns;
+		this.values = values;
+	}
+	
+	@Override
+	public double get(int i, int j) {
+		if (copy != null)
+			return copy.get(i, j);
+		
+		int low = offsets.get(i);
+		int high = offsets.get(i + 1) - 1;
+		while (low <= high) {
+			int mid = (low + high) >>> 1;
+			
+			if (columns.get(mid) < j)
+				low = mid + 1;
+			else if (columns.get(mid) > j)
+				high = mid - 1;
+			else
+				return values.get(mid);
+		}
+		
+		return 0;
+	}
+	
+	@Override
+	public void set(int i, int j, double value) {
+		if (copy == null) {
+			int[] offsetsCopy = new int[n + 1];
+			int[] columnsCopy = new int[columns.limit()];
+			double[] valuesCopy = new double[values.limit()];
+			offsets.get(0, offsetsCopy);
+			columns.get(0, columnsCopy);
+			values.get(0, valuesCopy);
+			copy = new SparseMatrix(n, offsetsCopy, columnsCopy, valuesCopy);
+		}
+		
+		copy.set(i, j, value);
+	}
+	
+	@Override
+	public int rowStart(int i) {
+		return copy != null ? copy.rowStart(i) : offsets.get(i);
+	}
+	
+	@Override
+	public int rowEnd(int i) {
+		return copy != null ? copy.rowEnd(i) : offsets.get(i + 1);
+	}
+	
+	@Override
+	public int getColumn(int position) {
+		return copy != null ? copy.getColumn(position) : columns.get(position);
+	}
+	
+	@Override
+	public double getValue(int position) {
+		return copy != null ? copy.getValue(position) : values.get(position);
+	}
+}
@@ -1,6 +1,11 @@
 package cz.zcu.pperncka.data;
 
-/** Class representing row-major square matrix of doubles. */
+/**
+ * Class representing row-major square matrix of doubles. Elements
+ * of a row can be iterated by positions from {@link #rowStart(int)}
+ * to {@link #rowEnd(int)}, see {@link SparseMatrix} for storage
+ * of only nonzero elements.
+ */
 public class Matrix {
 	
 	/** Row-major array of matrix data. */
@@ -18,6 +23,16 @@ public class Matrix {
 		this.n = n;
 	}
 	
+	/**
+	 * Constructor for subclasses with their own storage of elements.
+	 * @param n   rank of matrix
+	 * @param arr row-major array of matrix data, null if not used
+	 */
+	protected Matrix(int n, double[] arr) {
+		this.arr = arr;
+		this.n = n;
+	}
+	
 	/**
 	 * Returns element on position (i, j).
 	 * @param i row
@@ -37,4 +52,66 @@ public class Matrix {
 	public void set(int i, int j, double value) {
 		arr[i * n + j] = value;
 	}
+	
+	/**
+	 * Returns position of the first stored element of row.
+	 * @param i row
+	 * @return position of the first element of row i
+	 */
+	public int rowStart(int i) {
+		return i * n;
+	}
+	
+	/**
+	 * Returns position after the last stored element of row.
+	 * @param i row
+	 * @return position after the last element of row i
+	 */
+	public int rowEnd(int i) {
+		return (i + 1) * n;
+	}
+	
+	/**
+	 * Returns column of stored element.
+	 * @param position position of the element
+	 * @return column of the element
+	 */
+	public int getColumn(int position) {
+		return position % n;
+	}
+	
+	/**
+	 * Returns value of stored element.
+	 * @param position position of the element
+	 * @return value of the element
+	 */
+	public double getValue(int position) {
+		return arr[position];
+	}
+	
+	/**
+	 * Returns if row has a nonzero element.
+	 * @param i row
+	 * @return true, if any element of row i is nonzero
+	 */
+	public boolean hasNonzero(int i) {
+		for (int k = rowStart(i); k < rowEnd(i); k++)
+			if (getValue(k) != 0)
+				return true;
+		
+		return false;
+	}
+	
+	/**
+	 * Returns sum of all elements.
+	 * @return sum of all elements
+	 */
+	public double sum() {
+		double sum = 0;
+		for (int i = 0; i < n; i++)
+			for (int k = rowStart(i); k < rowEnd(i); k++)
+				sum += getValue(k);
+		
+		return sum;
+	}
 }
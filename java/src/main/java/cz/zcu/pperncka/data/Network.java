@@ -1,9 +1,10 @@
 package cz.zcu.pperncka.data;
 
 
-import com.google.common.util.concurrent.AtomicDoubleArray;
 import cz.zcu.pperncka.Utils;
 
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
 import java.util.*;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutorService;
@@ -12,7 +13,12 @@ import java.util.concurrent.ExecutorService;
  * Class representing static oriented graph/road network using
  * Compressed Sparse Row implementation. Nodes are represented
  * by the set {@code {0,...,nodes-1}}. First {@code zones} nodes
- * are zones.
+ * are zones. Attributes of arcs are stored in parallel arrays
+ * indexed by arc index (structure of arrays), objects of arcs
+ * are only views into these arrays for callers which work with
+ * arcs as objects. Trees of paths are arrays of arc indices and
+ * all computations of the algorithm work with the arrays by arc
+ * index, so they do not follow references to the objects.
  */
 public class Network {
 	
@@ -23,15 +29,57 @@ public class Network {
 	 */
 	private final int[] indices;
 	
-	/** Array of arcs in the network. */
+	/** Array of arcs in the network, views into the arrays of attributes. */
 	private final Arc[] arcs;
 	
+	/** Array of start nodes of arcs. */
+	private final int[] startNodes;
+	
+	/** Array of end nodes of arcs. */
+	private final int[] endNodes;
+	
+	/** Array of free flow times of arcs. */
+	private final double[] freeFlows;
+	
+	/** Array of capacities of arcs. */
+	private final double[] capacities;
+	
+	/** Array of current flows on arcs. */
+	private final double[] flows;
+	
+	/** Array of costs of arcs determined by BPR function. */
+	private final double[] costs;
+	
+	/** Handle for atomic and ordered access to elements of arrays of flows. */
+	private static final VarHandle FLOWS = MethodHandles.arrayElementVarHandle(double[].class);
+	
+	/** Handle for ordered access to elements of the array of costs. */
+	private static final VarHandle COSTS = MethodHandles.arrayElementVarHandle(double[].class);
+	
+	/** Free flow time of arc closed by {@link #closeArc(int)}. */
+	public static final double CLOSED_FREE_FLOW = 1e6;
+	
 	/** Number of nodes in the network. */
 	public final int nodes;
 	
 	/** Number of traffic zones in the network */
 	public final int zones;
 	
+	/** Type of priority queue used by {@link #minTree(int)}. */
+	private PriorityQueue.Type queueType = PriorityQueue.Type.QUATERNARY;
+	
+	/** Arcs whose flow changed since the last update of costs. */
+	private final EpochSet dirtyArcs;
+	
+	/** Workspace of each thread for computing min trees. */
+	private final ThreadLocal<Workspace> workspaces;
+	
+	/** Flows of all-or-nothing assignment, reused by {@link #gap(Matrix)}. */
+	private final double[] aonFlow;
+	
+	/** Flows of all-or-nothing assignment of each range of zones, reused by {@link #gap(Matrix, ExecutorService, int)}. */
+	private double[][] aonFlows = null;
+	
 	/**
 	 * Constructor creating network from adjacency list.
 	 * @param adjacencyList adjacency list representation of graph
@@ -46,6 +94,15 @@ public class Network {
 		this.zones = zones;
 		this.indices = new int[this.nodes + 1];
 		this.arcs = new Arc[numOfArcs];
+		this.startNodes = new int[numOfArcs];
+		this.endNodes = new int[numOfArcs];
+		this.freeFlows = new double[numOfArcs];
+		this.capacities = new double[numOfArcs];
+		this.flows = new double[numOfArcs];
+		this.costs = new double[numOfArcs];
+		this.dirtyArcs = new EpochSet(numOfArcs);
+		this.workspaces = ThreadLocal.withInitial(() -> new Workspace(this.nodes));
+		this.aonFlow = new double[numOfArcs];
 		
 		int offset = 0;
 		for (int startNode = 0; startNode < adjacencyList.length; startNode++) {
@@ -53,7 +110,13 @@ public class Network {
 			
 			var neighbors = adjacencyList[startNode];
 			for (int i = 0; i < neighbors.size(); i++) {
-				arcs[offset + i] = new Arc(neighbors.get(i), offset + i);
+				Arc copy = neighbors.get(i);
+				startNodes[offset + i] = copy.startNode;
+				endNodes[offset + i] = copy.endNode;
+				freeFlows[offset + i] = copy.getFreeFlow();
+				capacities[offset + i] = copy.getCapacity();
+				flows[offset + i] = copy.getCurrentFlow();
+				arcs[offset + i] = new Arc(copy.startNode, copy.endNode, offset + i, this);
 			}
 			
 			offset += neighbors.size();
@@ -61,6 +124,83 @@ public class Network {
 		indices[indices.length - 1] = offset;
 	}
 	
+	/**
+	 * Constructor creating network from arrays in Compressed Sparse Row
+	 * format, e.g. loaded from a binary file. The arrays are not copied.
+	 * Arcs starting in node i are those with indices from
+	 * {@code indices[i]} to {@code indices[i + 1]}.
+	 * @param indices    offsets of arcs of nodes, of length nodes + 1
+	 * @param endNodes   end nodes of arcs
+	 * @param capacities capacities of arcs
+	 * @param freeFlows  free flow times of arcs
+	 * @param zones      number of zones
+	 */
+	public Network(int[] indices, int[] endNodes, double[] capacities, double[] freeFlows, int zones) {
+		int numOfArcs = endNodes.length;
+		
+		this.nodes = indices.length - 1;
+		this.zones = zones;
+		this.indices = indices;
+		this.arcs = new Arc[numOfArcs];
+		this.startNodes = new int[numOfArcs];
+		this.endNodes = endNodes;
+		this.freeFlows = freeFlows;
+		this.capacities = capacities;
+		this.flows = new double[numOfArcs];
+		this.costs = new double[numOfArcs];
+		this.dirtyArcs = new EpochSet(numOfArcs);
+		this.workspaces = ThreadLocal.withInitial(() -> new Workspace(this.nodes));
+		this.aonFlow = new double[numOfArcs];
+		
+		for (int startNode = 0; startNode < nodes; startNode++)
+			for (int i = indices[startNode]; i < indices[startNode + 1]; i++) {
+				startNodes[i] = startNode;
+				arcs[i] = new Arc(startNode, endNodes[i], i, this);
+			}
+	}
+	
+	/**
+	 * Constructor creating a snapshot of network. The snapshot shares
+	 * structure and arcs of the network, flows and costs are copied.
+	 * Arc objects thus still view flows of the original network.
+	 * @param network network
+	 */
+	private Network(Network network) {
+		this.nodes = network.nodes;
+		this.zones = network.zones;
+		this.indices = network.indices;
+		this.arcs = network.arcs;
+		this.startNodes = network.startNodes;
+		this.endNodes = network.endNodes;
+		this.freeFlows = network.freeFlows;
+		this.capacities = network.capacities;
+		this.flows = network.flows.clone();
+		this.costs = network.costs.clone();
+		this.queueType = network.queueType;
+		this.dirtyArcs = new EpochSet(arcs.length);
+		this.workspaces = ThreadLocal.withInitial(() -> new Workspace(this.nodes));
+		this.aonFlow = new double[arcs.length];
+	}
+	
+	/**
+	 * Returns a snapshot of current flows and costs of this network,
+	 * which is not affected by later changes of this network, e.g. for
+	 * computing the gap in the background. Only methods working with
+	 * flows and costs by indices of arcs, such as {@link #gap(Matrix)},
+	 * should be called on the snapshot.
+	 * @param snapshot previous snapshot of this network to be reused, may be null
+	 * @return snapshot of this network
+	 */
+	public Network snapshot(Network snapshot) {
+		if (snapshot == null)
+			return new Network(this);
+		
+		System.arraycopy(flows, 0, snapshot.flows, 0, flows.length);
+		System.arraycopy(costs, 0, snapshot.costs, 0, costs.length);
+		snapshot.queueType = queueType;
+		return snapshot;
+	}
+	
 	/**
 	 * Returns arcs starting in given node.
 	 * @param node starting node
@@ -71,6 +211,133 @@ public class Network {
 		return new ArrayView<>(arcs, indices[node], indices[node + 1]);
 	}
 	
+	/**
+	 * Same as {@link #neighborsOf(int)}, but given view is moved
+	 * to arcs starting in given node instead of creating a new one.
+	 * Loops over {@link #firstArcOf(int)} and {@link #lastArcOf(int)}
+	 * are another way of iterating arcs without allocation.
+	 * @param node starting node
+	 * @param view view into array {@code arcs}, e.g. obtained from {@link #neighborsOf(int)}
+	 * @return given view representing subarray of arcs starting in {@code node}
+	 */
+	public ArrayView<Arc> neighborsOf(int node, ArrayView<Arc> view) {
+		return view.reset(indices[node], indices[node + 1]);
+	}
+	
+	/**
+	 * Returns index of the first arc starting in given node.
+	 * @param node starting node
+	 * @return index to array {@code arcs} of the first arc starting in {@code node}
+	 */
+	public int firstArcOf(int node) {
+		return indices[node];
+	}
+	
+	/**
+	 * Returns index after the last arc starting in given node.
+	 * @param node starting node
+	 * @return index to array {@code arcs} after the last arc starting in {@code node}
+	 */
+	public int lastArcOf(int node) {
+		return indices[node + 1];
+	}
+	
+	/**
+	 * Returns start node of arc.
+	 * @param arcIndex index of arc
+	 * @return node in which the arc starts
+	 */
+	public int getStartNode(int arcIndex) {
+		return startNodes[arcIndex];
+	}
+	
+	/**
+	 * Returns end node of arc.
+	 * @param arcIndex index of arc
+	 * @return node in which the arc ends
+	 */
+	public int getEndNode(int arcIndex) {
+		return endNodes[arcIndex];
+	}
+	
+	/**
+	 * Returns capacity of arc.
+	 * @param arcIndex index of arc
+	 * @return capacity of the arc
+	 */
+	public double getCapacity(int arcIndex) {
+		return capacities[arcIndex];
+	}
+	
+	/**
+	 * Returns free flow time of arc.
+	 * @param arcIndex index of arc
+	 * @return free flow time of the arc
+	 */
+	public double getFreeFlow(int arcIndex) {
+		return freeFlows[arcIndex];
+	}
+	
+	/**
+	 * Returns current flow on arc. The flow is read with acquire
+	 * semantics, see {@link #addFlowAtomic(int, double)}.
+	 * @param arcIndex index of arc
+	 * @return current flow of the arc
+	 */
+	public double getFlow(int arcIndex) {
+		return (double) FLOWS.getAcquire(flows, arcIndex);
+	}
+	
+	/**
+	 * Sets current flow on arc, e.g. when flows are loaded from a file.
+	 * Cost of the arc is not updated.
+	 * @param arcIndex index of arc
+	 * @param flow     new flow of the arc
+	 */
+	public void setFlow(int arcIndex, double flow) {
+		flows[arcIndex] = flow;
+	}
+	
+	/**
+	 * Adds flow to current flow of arc, the arc is then updated
+	 * by {@link #updateDirtyCosts()}.
+	 * @param arcIndex index of arc
+	 * @param delta    flow to be added
+	 */
+	public void addFlow(int arcIndex, double delta) {
+		flows[arcIndex] += delta;
+		dirtyArcs.add(arcIndex);
+	}
+	
+	/**
+	 * Atomically adds flow to current flow of arc, so that more
+	 * threads can add flows to the same arc at once. The arc is
+	 * not tracked by {@link #updateDirtyCosts()}.
+	 * @param arcIndex index of arc
+	 * @param delta    flow to be added
+	 */
+	public void addFlowAtomic(int arcIndex, double delta) {
+		FLOWS.getAndAdd(flows, arcIndex, delta);
+	}
+	
+	/**
+	 * Returns cost of arc, see {@link Arc#getCost()}. The cost is
+	 * read with acquire semantics, see {@link #updateCost(int)}.
+	 * @param arcIndex index of arc
+	 * @return cost of the arc
+	 */
+	public double getCost(int arcIndex) {
+		return (double) COSTS.getAcquire(costs, arcIndex);
+	}
+	
+	/**
+	 * Sets type of priority queue used in Dijkstra's algorithm.
+	 * @param queueType type of priority queue
+	 */
+	public void setPriorityQueue(PriorityQueue.Type queueType) {
+		this.queueType = queueType;
+	}
+	
 	/**
 	 * Returns array of all arcs.
 	 * @return array of all arcs
@@ -79,10 +346,84 @@ public class Network {
 		return arcs;
 	}
 	
+	/**
+	 * Changes capacity and free flow time of arc, e.g. for a work zone or
+	 * a new lane, and updates its cost. Flows are not changed, see
+	 * {@link cz.zcu.pperncka.algorithm.Algorithm#reequilibrate(int[])}.
+	 * @param arcIndex index of arc
+	 * @param capacity new capacity of the arc
+	 * @param freeFlow new free flow time of the arc
+	 */
+	public void setArcParameters(int arcIndex, double capacity, double freeFlow) {
+		capacities[arcIndex] = capacity;
+		freeFlows[arcIndex] = freeFlow;
+		updateCost(arcIndex);
+	}
+	
+	/**
+	 * Closes arc by setting its free flow time to {@link #CLOSED_FREE_FLOW}.
+	 * Arcs cannot be removed from the network, the closed arc is thus
+	 * still used by demand which has no other path.
+	 * @param arcIndex index of arc
+	 */
+	public void closeArc(int arcIndex) {
+		setArcParameters(arcIndex, capacities[arcIndex], CLOSED_FREE_FLOW);
+	}
+	
 	/** Updates cost of all arcs according to their current flows. */
 	public void updateCosts() {
-		for (Arc arc : arcs)
-			arc.cost = arc.BPR(0);
+		for (int i = 0; i < costs.length; i++)
+			updateCost(i);
+		dirtyArcs.clear();
+	}
+	
+	/**
+	 * Updates cost of arcs whose flow was changed by {@link #addFlow(int, double)}
+	 * since the last update of costs. Flows changed by
+	 * {@link #addFlowAtomic(int, double)} are not tracked.
+	 */
+	public void updateDirtyCosts() {
+		for (int i = 0; i < dirtyArcs.size(); i++)
+			updateCost(dirtyArcs.get(i));
+		dirtyArcs.clear();
+	}
+	
+	/**
+	 * Same as {@link #updateDirtyCosts()}, but also collects arcs
+	 * whose cost changed relatively more than given tolerance.
+	 * @param tolerance   max. relative change of cost of an arc, which is not collected
+	 * @param changedArcs array of size of number of arcs, to which
+	 *                    indices of collected arcs are written
+	 * @return number of collected arcs
+	 */
+	public int updateDirtyCosts(double tolerance, int[] changedArcs) {
+		int count = 0;
+		for (int j = 0; j < dirtyArcs.size(); j++) {
+			int i = dirtyArcs.get(j);
+			double oldCost = costs[i];
+			updateCost(i);
+			
+			if (Math.abs(costs[i] - oldCost) > tolerance * oldCost)
+				changedArcs[count++] = i;
+		}
+		dirtyArcs.clear();
+		
+		return count;
+	}
+	
+	/**
+	 * Updates cost of arc according to its current flow. The flow is read
+	 * with acquire and the cost written with release semantics, so that
+	 * threads updating costs of their bushes, while other threads add flows
+	 * by {@link #addFlowAtomic(int, double)}, never read a partially written
+	 * value. Such costs may still be stale, until all costs are updated
+	 * by {@link #updateCosts()} after all threads finished.
+	 * @param arcIndex index of arc
+	 */
+	public void updateCost(int arcIndex) {
+		double ratio = (double) FLOWS.getAcquire(flows, arcIndex) / capacities[arcIndex];
+		double fourthPow = ratio * ratio * ratio * ratio;
+		COSTS.setRelease(costs, arcIndex, freeFlows[arcIndex] * (1 + 0.15 * fourthPow));
 	}
 	
 	/**
@@ -92,8 +433,11 @@ public class Network {
 	 */
 	public double objectiveFunction() {
 		double of = 0;
-		for (Arc arc : arcs)
-			of += arc.BPRintegral();
+		for (int i = 0; i < flows.length; i++) {
+			double b = flows[i] / capacities[i];
+			double power = b * b * b * b;
+			of += freeFlows[i] * flows[i] * (1 + 0.03 * power);
+		}
 		return of;
 	}
 	
@@ -103,74 +447,120 @@ public class Network {
 	 * @return value of gap w.r.t. current flows
 	 */
 	public double gap(Matrix odm) {
-		double[] aonFlow = new double[arcs.length];
+		double[] aonFlow = this.aonFlow;
+		Arrays.fill(aonFlow, 0);
 		
-		for (int startZone = 0; startZone < zones; startZone++) {
-			Arc[] minTree = minTree(startZone).second();
-			
-			for (int endZone = 0; endZone < zones; endZone++) {
-				double trips = odm.get(startZone, endZone);
-				if (trips == 0)
-					continue;
-				
-				Arc arc = minTree[endZone];
-				while (arc != null) {
-					aonFlow[arc.index] += trips;
-					
-					arc = minTree[arc.startNode];
-				}
-			}
-		}
+		Workspace workspace = workspaces.get();
+		for (int startZone = 0; startZone < zones; startZone++)
+			assignAllOrNothing(odm, startZone, workspace, aonFlow);
 		
 		double gap = 0;
-		for (Arc arc : arcs)
-			gap += arc.cost * (aonFlow[arc.index] - arc.currentFlow);
+		for (int i = 0; i < costs.length; i++)
+			gap += costs[i] * (aonFlow[i] - flows[i]);
 		
 		return gap;
 	}
 	
 	/**
-	 * Same as {@link #gap(Matrix)} but parallelized.
+	 * Same as {@link #gap(Matrix)} but parallelized. Zones are split
+	 * into {@code threads} ranges, AON flows of each range are summed
+	 * into its own array, which are then reduced by a fixed binary
+	 * tree. The result thus does not depend on scheduling of tasks and
+	 * is the same for the same number of threads, it may differ from
+	 * {@link #gap(Matrix)} in the last bits due to order of summation.
 	 * @param odm        OD matrix needed for AON assignment part
 	 * @param threadPool thread pool for executing tasks
-	 * @return value of gap w.r.t. current flows, slightly undeterministic
+	 * @param threads    number of ranges of zones and of arcs
+	 * @return value of gap w.r.t. current flows
 	 */
-	public double gap(Matrix odm, ExecutorService threadPool) {
-		
-		AtomicDoubleArray aonFlow = new AtomicDoubleArray(arcs.length);
+	public double gap(Matrix odm, ExecutorService threadPool, int threads) {
+		if (aonFlows == null || aonFlows.length != threads)
+			aonFlows = new double[threads][arcs.length];
+		double[][] aonFlows = this.aonFlows;
 		
 		ArrayList<Callable<Void>> jobs = new ArrayList<>();
-		for (int i = 0; i < zones; i++) {
-			int startZone = i;
+		for (int t = 0; t < threads; t++) {
+			double[] aonFlow = aonFlows[t];
+			int firstZone = (int) ((long) zones * t / threads);
+			int lastZone = (int) ((long) zones * (t + 1) / threads);
 			
 			jobs.add(() -> {
-				Network.Arc[] minTree = minTree(startZone).second();
+				Arrays.fill(aonFlow, 0);
 				
-				for (int endZone = 0; endZone < zones; endZone++) {
-					double trips = odm.get(startZone, endZone);
-					if (trips == 0)
-						continue;
-					
-					Network.Arc arc = minTree[endZone];
-					while (arc != null) {
-						aonFlow.getAndAdd(arc.index, trips);
-						
-						arc = minTree[arc.startNode];
+				Workspace workspace = workspaces.get();
+				for (int startZone = firstZone; startZone < lastZone; startZone++)
+					assignAllOrNothing(odm, startZone, workspace, aonFlow);
+				return null;
+			});
+		}
+		Utils.tryInvokeAll(threadPool, jobs);
+		
+		// redukce binárním stromem, každá úloha sčítá svůj úsek hran
+		double[] partialGaps = new double[threads];
+		jobs.clear();
+		for (int t = 0; t < threads; t++) {
+			int range = t;
+			int firstArc = (int) ((long) arcs.length * t / threads);
+			int lastArc = (int) ((long) arcs.length * (t + 1) / threads);
+			
+			jobs.add(() -> {
+				for (int step = 1; step < threads; step *= 2)
+					for (int j = 0; j + step < threads; j += 2 * step) {
+						double[] to = aonFlows[j];
+						double[] from = aonFlows[j + step];
+						for (int i = firstArc; i < lastArc; i++)
+							to[i] += from[i];
 					}
-				}
+				
+				double gap = 0;
+				for (int i = firstArc; i < lastArc; i++)
+					gap += costs[i] * (aonFlows[0][i] - flows[i]);
+				partialGaps[range] = gap;
 				return null;
 			});
 		}
 		Utils.tryInvokeAll(threadPool, jobs);
 		
 		double gap = 0;
-		for (Network.Arc arc : arcs)
-			gap += arc.cost * (aonFlow.get(arc.index) - arc.currentFlow);
+		for (double partialGap : partialGaps)
+			gap += partialGap;
 		
 		return gap;
 	}
 	
-	/** Class representing an arc in the network. */
+	/**
+	 * Assigns demand from given zone to min paths from the zone.
+	 * Min tree is not searched for zone without demand.
+	 * @param odm       OD matrix
+	 * @param startZone zone from which the demand is assigned
+	 * @param workspace workspace of the calling thread
+	 * @param aonFlow   array of flows of arcs to which the demand is added
+	 */
+	private void assignAllOrNothing(Matrix odm, int startZone, Workspace workspace, double[] aonFlow) {
+		if (!odm.hasNonzero(startZone))
+			return;
+		
+		minTree(startZone, workspace);
+		int[] minTree = workspace.minTree;
+		
+		for (int k = odm.rowStart(startZone); k < odm.rowEnd(startZone); k++) {
+			double trips = odm.getValue(k);
+			if (trips == 0)
+				continue;
+			
+			int arc = minTree[odm.getColumn(k)];
+			while (arc != -1) {
+				aonFlow[arc] += trips;
+				
+				arc = minTree[startNodes[arc]];
+			}
+		}
+	}
+	
+	/**
+	 * Class representing an arc in the network. Attributes, flow and cost
+	 * of arc which belongs to a network are stored in arrays of the network.
+	 */
 	public static class Arc {
 		
 		/** Node in which this arc ends. */
@@ -182,17 +572,11 @@ public class Network {
 		/** Index of this arc in the array {@code arcs}. */
 		public final int index;
 		
-		/** Capacity of this arc. */
-		public final double capacity;
-		
-		/** Free flow time of this arc. */
-		public final double freeFlow;
-		
-		/** Current flow on this arc in the network. */
-		private double currentFlow = 0;
+		/** Network whose arrays store attributes of this arc on index {@code index}, null for arc without network. */
+		private final Network network;
 		
-		/** Cost of this arc determined by BPR function. */
-		private double cost = 0;
+		/** Capacity, free flow time, flow and cost of arc without network. */
+		private final double[] values;
 		
 		/**
 		 * Creates new arc with given parameters and zero flow.
@@ -202,26 +586,23 @@ public class Network {
 		 * @param freeFlow  free flow time of this arc
 		 */
 		public Arc(int startNode, int endNode, double capacity, double freeFlow) {
-			this.startNode = startNode;
-			this.endNode = endNode;
-			this.capacity = capacity;
-			this.freeFlow = freeFlow;
-			this.index = -1;
+			this(startNode, endNode, capacity, freeFlow, 0, -1);
 		}
 		
 		/**
-		 * Creates a copy of given arc with initialized index.
-		 * @param copy  arc to be copied
-		 * @param index index to array {@code arcs} in which will
-		 *              this arc reside
+		 * Creates view of arc of network.
+		 * @param startNode node in which this arc starts
+		 * @param endNode   node in which this arc ends
+		 * @param index     index to array {@code arcs} in which will
+		 *                  this arc reside
+		 * @param network   network storing attributes of this arc
 		 */
-		private Arc(Arc copy, int index) {
-			this.startNode = copy.startNode;
-			this.endNode = copy.endNode;
-			this.capacity = copy.capacity;
-			this.freeFlow = copy.freeFlow;
-			this.currentFlow = copy.currentFlow;
+		private Arc(int startNode, int endNode, int index, Network network) {
+			this.startNode = startNode;
+			this.endNode = endNode;
 			this.index = index;
+			this.network = network;
+			this.values = null;
 		}
 		
 		/** Constructor for testing purposes. */
@@ -229,10 +610,9 @@ public class Network {
 				   double freeFlow, double flow, int index) {
 			this.startNode = startNode;
 			this.endNode = endNode;
-			this.capacity = capacity;
-			this.freeFlow = freeFlow;
-			this.currentFlow = flow;
 			this.index = index;
+			this.network = null;
+			this.values = new double[]{capacity, freeFlow, flow, 0};
 		}
 		
 		/**
@@ -240,7 +620,38 @@ public class Network {
 		 * @param delta flow to be added
 		 */
 		public void addFlow(double delta) {
-			currentFlow += delta;
+			if (network != null)
+				network.addFlow(index, delta);
+			else
+				values[2] += delta;
+		}
+		
+		/**
+		 * Atomically adds flow to current flow of this arc, so that
+		 * more threads can add flows to the same arc at once.
+		 * @param delta flow to be added
+		 */
+		public void addFlowAtomic(double delta) {
+			if (network != null)
+				network.addFlowAtomic(index, delta);
+			else
+				FLOWS.getAndAdd(values, 2, delta);
+		}
+		
+		/**
+		 * Returns capacity.
+		 * @return capacity of this arc
+		 */
+		public double getCapacity() {
+			return network != null ? network.capacities[index] : values[0];
+		}
+		
+		/**
+		 * Returns free flow time.
+		 * @return free flow time of this arc
+		 */
+		public double getFreeFlow() {
+			return network != null ? network.freeFlows[index] : values[1];
 		}
 		
 		/**
@@ -248,7 +659,7 @@ public class Network {
 		 * @return current flow of this arc
 		 */
 		public double getCurrentFlow() {
-			return currentFlow;
+			return network != null ? network.flows[index] : values[2];
 		}
 		
 		/**
@@ -258,7 +669,7 @@ public class Network {
 		 * @return cost of this arc
 		 */
 		public double getCost() {
-			return cost;
+			return network != null ? network.costs[index] : values[3];
 		}
 		
 		/**
@@ -268,9 +679,9 @@ public class Network {
 		 * @return cost of this arc
 		 */
 		public double BPR(double delta) {
-			double ratio = (currentFlow + delta) / capacity;
+			double ratio = (getCurrentFlow() + delta) / getCapacity();
 			double fourthPow = ratio * ratio * ratio * ratio;
-			return freeFlow * (1 + 0.15 * fourthPow);
+			return getFreeFlow() * (1 + 0.15 * fourthPow);
 		}
 		
 		/**
@@ -281,9 +692,10 @@ public class Network {
 		 * @return cost derivative of this arc
 		 */
 		public double BPRderivative(double delta) {
-			double a = (currentFlow + delta) / capacity;
+			double capacity = getCapacity();
+			double a = (getCurrentFlow() + delta) / capacity;
 			double b = a * a * a;
-			return 0.6 * freeFlow * b / capacity;
+			return 0.6 * getFreeFlow() * b / capacity;
 		}
 		
 		/**
@@ -292,9 +704,10 @@ public class Network {
 		 * @return the value of integral of BPR function
 		 */
 		public double BPRintegral() {
-			double b = currentFlow / capacity;
+			double flow = getCurrentFlow();
+			double b = flow / getCapacity();
 			double power = b * b * b * b;
-			return freeFlow * currentFlow * (1 + 0.03 * power);
+			return getFreeFlow() * flow * (1 + 0.03 * power);
 		}
 		
 		@Override
@@ -315,45 +728,60 @@ public class Network {
 	/**
 	 * Using Dijkstra, this method returns the tree of min paths
 	 * and according distances to each node from given root node.
-	 * Distances are calculated from arc costs.
+	 * Distances are calculated from arc costs. The tree contains index
+	 * of the last arc of min path to each node, -1 for the root and
+	 * unreachable nodes.
 	 * @param root node in which the algorithm starts
 	 * @return pair (min. distances, min. tree)
 	 */
-	public Pair<double[], Network.Arc[]> minTree(int root) {
-		double[] distance = new double[nodes];
+	public Pair<double[], int[]> minTree(int root) {
+		Workspace workspace = new Workspace(nodes);
+		minTree(root, workspace);
+		
+		return new Pair<>(workspace.minDistance, workspace.minTree);
+	}
+	
+	/**
+	 * Same as {@link #minTree(int)}, but the min distances and the
+	 * min tree are stored to {@code minDistance} and {@code minTree}
+	 * of given workspace, so that no memory is allocated.
+	 * @param root      node in which the algorithm starts
+	 * @param workspace workspace of the calling thread
+	 */
+	public void minTree(int root, Workspace workspace) {
+		double[] distance = workspace.minDistance;
 		Arrays.fill(distance, Double.POSITIVE_INFINITY);
 		distance[root] = 0;
 		
-		Arc[] previous = new Arc[nodes];
+		int[] previous = workspace.minTree;
+		Arrays.fill(previous, -1);
 		
-		PriorityQueue pq = new PriorityQueue(nodes);
-		int[] mark = new int[nodes];
+		PriorityQueue pq = workspace.getQueue(queueType);
+		// označené uzly jsou uzavřené, uzly s konečnou vzdáleností jsou ve frontě
+		workspace.newMark();
 		
 		
 		pq.add(root, 0);
 		while (!pq.isEmpty()) {
 			int fromVertex = pq.popMin();
-			mark[fromVertex] = 2;
+			workspace.mark(fromVertex);
 			
-			for (Arc arc : neighborsOf(fromVertex)) {
-				int toVertex = arc.endNode;
-				if (mark[toVertex] == 2)
+			for (int arc = indices[fromVertex]; arc < indices[fromVertex + 1]; arc++) {
+				int toVertex = endNodes[arc];
+				if (workspace.isMarked(toVertex))
 					continue;
 				
-				double newDistance = distance[fromVertex] + arc.cost;
-				if (mark[toVertex] == 0) {
-					mark[toVertex] = 1;
+				double newDistance = distance[fromVertex] + costs[arc];
+				if (distance[toVertex] == Double.POSITIVE_INFINITY) {
 					distance[toVertex] = newDistance;
 					previous[toVertex] = arc;
 					pq.add(toVertex, newDistance);
-				} else if (mark[toVertex] == 1 && newDistance < distance[toVertex]) {
+				} else if (newDistance < distance[toVertex]) {
 					distance[toVertex] = newDistance;
 					previous[toVertex] = arc;
 					pq.decreasePriority(toVertex, newDistance);
 				}
 			}
 		}
-		
-		return new Pair<>(distance, previous);
 	}
 }
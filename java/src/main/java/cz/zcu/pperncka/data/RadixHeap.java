@@ -0,0 +1,136 @@
+package cz.zcu.pperncka.data;
+
+import java.util.Arrays;
+
+/**
+ * A monotone min priority queue implementation using a radix heap.
+ * Priorities must be non-negative and popped priorities must never
+ * decrease, which holds for Dijkstra's algorithm with non-negative
+ * costs. Bit patterns of non-negative doubles are ordered the same
+ * as the doubles, so the radix heap works with them directly.
+ */
+public class RadixHeap implements PriorityQueue {
+	
+	/** Number of buckets, one for each bit of priority plus one. */
+	private static final int BUCKETS = Long.SIZE + 1;
+	
+	/**
+	 * Elements in buckets. Bucket i holds elements whose priority
+	 * differs from {@code last} in bit i-1 as the highest bit,
+	 * bucket 0 holds elements with priority equal to {@code last}.
+	 */
+	private final int[][] buckets;
+	
+	/** Number of elements in each bucket. */
+	private final int[] bucketSizes;
+	
+	/** Array of bit patterns of priorities of elements. */
+	private final long[] priorities;
+	
+	/** Array of buckets of elements, -1 if element is not in the queue. */
+	private final int[] bucketOf;
+	
+	/** Array of positions of elements in their buckets. */
+	private final int[] positions;
+	
+	/** Bit pattern of last popped priority. */
+	private long last = 0;
+	
+	/** Current size of queue. */
+	private int count = 0;
+	
+	/**
+	 * Creates radix heap of constant size.
+	 * @param size number of possible elements
+	 */
+	public RadixHeap(int size) {
+		this.buckets = new int[BUCKETS][];
+		for (int i = 0; i < BUCKETS; i++)
+			buckets[i] = new int[4];
+		this.bucketSizes = new int[BUCKETS];
+		this.priorities = new long[size];
+		this.bucketOf = new int[size];
+		this.positions = new int[size];
+		Arrays.fill(bucketOf, -1);
+	}
+	
+	@Override
+	public void add(int value, double priority) {
+		priorities[value] = Double.doubleToRawLongBits(priority);
+		insert(value);
+		count++;
+	}
+	
+	@Override
+	public int popMin() {
+		if (bucketSizes[0] == 0) {
+			int i = 1;
+			while (bucketSizes[i] == 0)
+				i++;
+			
+			// nové minimum, prvky kbelíku se rozdělí do nižších kbelíků
+			int[] bucket = buckets[i];
+			int size = bucketSizes[i];
+			long min = priorities[bucket[0]];
+			for (int j = 1; j < size; j++)
+				min = Math.min(min, priorities[bucket[j]]);
+			
+			last = min;
+			bucketSizes[i] = 0;
+			for (int j = 0; j < size; j++)
+				insert(bucket[j]);
+		}
+		
+		int min = buckets[0][--bucketSizes[0]];
+		bucketOf[min] = -1;
+		count--;
+		
+		// prázdnou frontu lze použít znovu od nuly
+		if (count == 0)
+			last = 0;
+		
+		return min;
+	}
+	
+	@Override
+	public void decreasePriority(int value, double newPriority) {
+		remove(value);
+		priorities[value] = Double.doubleToRawLongBits(newPriority);
+		insert(value);
+	}
+	
+	@Override
+	public boolean isEmpty() {
+		return count == 0;
+	}
+	
+	/**
+	 * Inserts element into bucket according to its priority.
+	 * @param value element
+	 */
+	private void insert(int value) {
+		long diff = priorities[value] ^ last;
+		int i = diff == 0 ? 0 : Long.SIZE - Long.numberOfLeadingZeros(diff);
+		
+		if (bucketSizes[i] == buckets[i].length)
+			buckets[i] = Arrays.copyOf(buckets[i], 2 * buckets[i].length);
+		
+		bucketOf[value] = i;
+		positions[value] = bucketSizes[i];
+		buckets[i][bucketSizes[i]++] = value;
+	}
+	
+	/**
+	 * Removes element from its bucket by moving
+	 * the last element of the bucket in its place.
+	 * @param value element
+	 */
+	private void remove(int value) {
+		int i = bucketOf[value];
+		int position = positions[value];
+		int moved = buckets[i][--bucketSizes[i]];
+		
+		buckets[i][position] = moved;
+		positions[moved] = position;
+	}
+}
@@ -0,0 +1,115 @@
+package cz.zcu.pperncka.data;
+
+import java.util.Arrays;
+
+/**
+ * Class holding flows and cost coefficients of arcs of a max path
+ * segment and a min path segment in primitive arrays, so that the
+ * difference of costs of the segments after shifting flow between them
+ * can be evaluated repeatedly without walking the trees. Arcs of the max
+ * segment are added first, see {@link #startMinSegment()}.
+ */
+public class SegmentBuffer {
+	
+	/** Flows of arcs, max segment first. */
+	private double[] flows = new double[16];
+	
+	/**
+	 * Coefficient of each arc, such that its BPR cost, see {@link Network#updateCost(int)},
+	 * is its free flow time plus the coefficient times the fourth power of its flow.
+	 */
+	private double[] coefficients = new double[16];
+	
+	/** Number of added arcs. */
+	private int size = 0;
+	
+	/** Number of arcs of max segment, -1 if max segment is not ended yet. */
+	private int maxSize = -1;
+	
+	/** Sum of free flow times of max segment minus the same sum of min segment. */
+	private double freeFlowDifference = 0;
+	
+	/** Cost of max segment minus cost of min segment after the last evaluation. */
+	public double costDifference;
+	
+	/** Sum of derivatives of costs of arcs of both segments after the last evaluation. */
+	public double derivative;
+	
+	/**
+	 * Removes all arcs, next added arcs belong to max segment. Until
+	 * the next evaluation, {@code costDifference} and {@code derivative}
+	 * are accumulated from added arcs w.r.t. their current flows.
+	 */
+	public void clear() {
+		size = 0;
+		maxSize = -1;
+		freeFlowDifference = 0;
+		costDifference = 0;
+		derivative = 0;
+	}
+	
+	/** Ends max segment, next added arcs belong to min segment. */
+	public void startMinSegment() {
+		maxSize = size;
+	}
+	
+	/**
+	 * Adds arc with its current flow to the current segment.
+	 * @param network network
+	 * @param arc     index of arc of the segment
+	 */
+	public void add(Network network, int arc) {
+		if (size == flows.length) {
+			flows = Arrays.copyOf(flows, 2 * size);
+			coefficients = Arrays.copyOf(coefficients, 2 * size);
+		}
+		
+		double flow = network.getFlow(arc);
+		double freeFlow = network.getFreeFlow(arc);
+		double capacity = network.getCapacity(arc);
+		double squaredCapacity = capacity * capacity;
+		double coefficient = 0.15 * freeFlow / (squaredCapacity * squaredCapacity);
+		flows[size] = flow;
+		coefficients[size] = coefficient;
+		size++;
+		
+		// cena a derivace pro nulový přesun se počítají rovnou
+		double cube = flow * flow * flow;
+		double cost = freeFlow + coefficient * cube * flow;
+		if (maxSize == -1) {
+			freeFlowDifference += freeFlow;
+			costDifference += cost;
+		} else {
+			freeFlowDifference -= freeFlow;
+			costDifference -= cost;
+		}
+		derivative += 4 * coefficient * cube;
+	}
+	
+	/**
+	 * Evaluates costs of segments and sum of their derivatives after given
+	 * flow is shifted from max segment to min segment. Results are stored
+	 * to {@code costDifference} and {@code derivative}.
+	 * @param delta flow shifted from max segment to min segment
+	 */
+	public void evaluate(double delta) {
+		double cost = 0;
+		double derivative = 0;
+		for (int i = 0; i < maxSize; i++) {
+			double flow = flows[i] - delta;
+			double cube = flow * flow * flow;
+			cost += coefficients[i] * cube * flow;
+			derivative += coefficients[i] * cube;
+		}
+		
+		for (int i = maxSize; i < size; i++) {
+			double flow = flows[i] + delta;
+			double cube = flow * flow * flow;
+			cost -= coefficients[i] * cube * flow;
+			derivative += coefficients[i] * cube;
+		}
+		
+		this.costDifference = freeFlowDifference + cost;
+		this.derivative = 4 * derivative;
+	}
+}
@@ -0,0 +1,286 @@
+package cz.zcu.pperncka.data;
+
+import java.util.Arrays;
+
+/**
+ * Bush storing only arcs of the bush and arcs with nonzero flow
+ * on the bush, in a sorted array of their indices with parallel
+ * array of flows. Memory is thus proportional to size of the bush
+ * instead of size of the network, at the cost of binary search
+ * on each access by arc index.
+ */
+public class SparseBush extends Bush {
+	
+	/** Minimal capacity of arrays of this bush. */
+	private static final int MIN_CAPACITY = 16;
+	
+	/** Bit of an entry of {@code arcs} marking arc which is not in this bush. */
+	private static final int REMOVED = 0x80000000;
+	
+	/** Mask extracting index of arc from an entry of {@code arcs}. */
+	private static final int INDEX = 0x7fffffff;
+	
+	/** Number of edges in original network. */
+	private final int arcsNum;
+	
+	/**
+	 * Sorted indices of arcs of {@code arcs} array of {@code Network}
+	 * which are in this bush or have nonzero flow on this bush. Arcs
+	 * which are not in this bush are marked by {@code REMOVED} bit.
+	 */
+	private int[] arcs;
+	
+	/** Array representing flow on this bush for each arc in {@code arcs} */
+	private double[] flows;
+	
+	/** Number of valid entries in {@code arcs} and {@code flows}. */
+	private int count = 0;
+	
+	/**
+	 * Unsorted indices of arcs added to this bush which are
+	 * yet to be merged into {@code arcs}, may contain duplicates.
+	 */
+	private int[] pending;
+	
+	/** Number of valid entries in {@code pending}. */
+	private int pendingCount = 0;
+	
+	/**
+	 * Constructor creating bush with given root and
+	 * supporting given number of edges.
+	 * @param arcsNum number of edges in original network
+	 * @param root    node from which was this bush created
+	 */
+	public SparseBush(int arcsNum, int root) {
+		super(root);
+		this.arcsNum = arcsNum;
+		this.arcs = new int[MIN_CAPACITY];
+		this.flows = new double[MIN_CAPACITY];
+		this.pending = new int[MIN_CAPACITY];
+	}
+	
+	@Override
+	public void addArc(int arcIndex) {
+		int position = search(arcIndex);
+		if (position >= 0) {
+			if ((arcs[position] & REMOVED) == 0)
+				return;
+			
+			arcs[position] = arcIndex;
+			setTopologicalOrder(null);
+			return;
+		}
+		
+		// hrany mimo seřazenou část se slévají líně po dávkách
+		if (pendingCount == pending.length)
+			pending = Arrays.copyOf(pending, grow(pending.length));
+		pending[pendingCount++] = arcIndex;
+		setTopologicalOrder(null);
+	}
+	
+	@Override
+	public void removeArc(int arcIndex) {
+		merge();
+		
+		int position = search(arcIndex);
+		if (position >= 0)
+			arcs[position] |= REMOVED;
+	}
+	
+	@Override
+	public void removeArcsWithoutFlow() {
+		merge();
+		
+		for (int i = 0; i < count; i++)
+			if (flows[i] <= 0)
+				arcs[i] |= REMOVED;
+		
+		compact();
+	}
+	
+	@Override
+	public void removeArcAt(int position) {
+		arcs[position] |= REMOVED;
+	}
+	
+	@Override
+	public void compact() {
+		merge();
+		
+		int j = 0;
+		for (int i = 0; i < count; i++) {
+			if ((arcs[i] & REMOVED) != 0 && flows[i] == 0)
+				continue;
+			
+			arcs[j] = arcs[i];
+			flows[j] = flows[i];
+			j++;
+		}
+		count = j;
+		
+		if (arcs.length > MIN_CAPACITY && count < arcs.length / 4) {
+			int capacity = Math.max(grow(count), MIN_CAPACITY);
+			arcs = Arrays.copyOf(arcs, capacity);
+			flows = Arrays.copyOf(flows, capacity);
+		}
+	}
+	
+	@Override
+	public boolean arcExists(int arcIndex) {
+		merge();
+		
+		int position = search(arcIndex);
+		return position >= 0 && (arcs[position] & REMOVED) == 0;
+	}
+	
+	@Override
+	public double getArcFlow(int arcIndex) {
+		merge();
+		
+		int position = search(arcIndex);
+		return position >= 0 ? flows[position] : 0;
+	}
+	
+	@Override
+	public void addFlow(int arcIndex, double flow) {
+		merge();
+		
+		int position = search(arcIndex);
+		if (position >= 0) {
+			flows[position] += flow;
+			return;
+		}
+		
+		// tok na hraně, která není v keři
+		position = -position - 1;
+		ensureCapacity(count + 1);
+		System.arraycopy(arcs, position, arcs, position + 1, count - position);
+		System.arraycopy(flows, position, flows, position + 1, count - position);
+		arcs[position] = arcIndex | REMOVED;
+		flows[position] = flow;
+		count++;
+	}
+	
+	@Override
+	public int size() {
+		merge();
+		return count;
+	}
+	
+	@Override
+	public int positionOf(int arcIndex) {
+		merge();
+		
+		int position = search(arcIndex);
+		return position >= 0 ? position : -position - 1;
+	}
+	
+	@Override
+	public boolean arcExistsAt(int position) {
+		return (arcs[position] & REMOVED) == 0;
+	}
+	
+	@Override
+	public int getArc(int position) {
+		return arcs[position] & INDEX;
+	}
+	
+	@Override
+	public double getFlow(int position) {
+		return flows[position];
+	}
+	
+	@Override
+	public void setTopologicalOrder(int[] topologicalOrder) {
+		// čekající hrany se slijí, aby jejich opětovné přidání pořadí nezneplatnilo
+		if (topologicalOrder != null)
+			merge();
+		
+		super.setTopologicalOrder(topologicalOrder);
+	}
+	
+	/**
+	 * Binary search of arc in the sorted part of {@code arcs}.
+	 * @param arcIndex index of arc
+	 * @return position of the arc if it is stored,
+	 * {@code -(insertion point) - 1} otherwise
+	 */
+	private int search(int arcIndex) {
+		int low = 0;
+		int high = count - 1;
+		
+		while (low <= high) {
+			int mid = (low + high) >>> 1;
+			int midIndex = arcs[mid] & INDEX;
+			
+			if (midIndex < arcIndex)
+				low = mid + 1;
+			else if (midIndex > arcIndex)
+				high = mid - 1;
+			else
+				return mid;
+		}
+		
+		return -(low + 1);
+	}
+	
+	/** Merges pending arcs into the sorted {@code arcs}. */
+	private void merge() {
+		if (pendingCount == 0)
+			return;
+		
+		Arrays.sort(pending, 0, pendingCount);
+		int unique = 0;
+		for (int i = 0; i < pendingCount; i++)
+			if (unique == 0 || pending[unique - 1] != pending[i])
+				pending[unique++] = pending[i];
+		
+		ensureCapacity(count + unique);
+		
+		// slévání odzadu, aby nebylo třeba pomocné pole
+		int i = count - 1;
+		int j = unique - 1;
+		int k = count + unique - 1;
+		while (j >= 0) {
+			if (i >= 0 && (arcs[i] & INDEX) > pending[j]) {
+				arcs[k] = arcs[i];
+				flows[k] = flows[i];
+				i--;
+			} else {
+				arcs[k] = pending[j];
+				flows[k] = 0;
+				j--;
+			}
+			k--;
+		}
+		
+		count += unique;
+		pendingCount = 0;
+		if (pending.length > MIN_CAPACITY)
+			pending = new int[MIN_CAPACITY];
+	}
+	
+	/**
+	 * Enlarges {@code arcs} and {@code flows} if they
+	 * cannot hold given number of entries.
+	 * @param capacity required capacity
+	 */
+	private void ensureCapacity(int capacity) {
+		if (capacity <= arcs.length)
+			return;
+		
+		int newCapacity = Math.max(capacity, grow(arcs.length));
+		arcs = Arrays.copyOf(arcs, newCapacity);
+		flows = Arrays.copyOf(flows, newCapacity);
+	}
+	
+	/**
+	 * Returns enlarged capacity, never larger than
+	 * number of edges in original network.
+	 * @param capacity current capacity
+	 * @return enlarged capacity
+	 */
+	private int grow(int capacity) {
+		return Math.max(Math.min(capacity + (capacity >> 1), arcsNum), capacity + 1);
+	}
+}
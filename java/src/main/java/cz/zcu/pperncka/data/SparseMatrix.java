@@ -0,0 +1,180 @@
+package cz.zcu.pperncka.data;
+
+import java.util.Arrays;
+
+/**
+ * Square matrix storing only nonzero elements in compressed sparse
+ * row format, i.e. columns and values of elements sorted by rows
+ * and columns with offsets of rows. Memory is thus proportional to
+ * number of nonzero elements instead of square of rank, at the cost
+ * of binary search on each access by column. Setting a new nonzero
+ * element moves all elements of following rows.
+ */
+public class SparseMatrix extends Matrix {
+	
+	/**
+	 * Array of offsets to arrays {@code columns} and {@code values}. On
+	 * index i in this array is the position of the first element of row i.
+	 */
+	private final int[] offsets;
+	
+	/** Columns of stored elements, sorted in each row. */
+	private int[] columns;
+	
+	/** Values of stored elements. */
+	private double[] values;
+	
+	/**
+	 * Constructor creating matrix from arrays in compressed sparse
+	 * row format, the arrays are not copied.
+	 * @param n       rank of matrix
+	 * @param offsets offsets of rows, of length n + 1
+	 * @param columns columns of elements, sorted in each row
+	 * @param values  values of elements
+	 */
+	public SparseMatrix(int n, int[] offsets, int[] columns, double[] values) {
+		super(n, null);
+		this.offsets = offsets;
+		this.columns = columns;
+		this.values = values;
+	}
+	
+	/**
+	 * Creates matrix from elements in any order. If an element is
+	 * given more times, the last value is used, as if the elements
+	 * were set one by one by {@link #set(int, int, double)}.
+	 * @param n       rank of matrix
+	 * @param rows    rows of elements
+	 * @param columns columns of elements
+	 * @param values  values of elements
+	 * @param count   number of elements in the arrays
+	 * @return matrix with given elements
+	 */
+	public static SparseMatrix fromElements(int n, int[] rows, int[] columns, double[] values, int count) {
+		int[] offsets = new int[n + 1];
+		for (int k = 0; k < count; k++)
+			offsets[rows[k] + 1]++;
+		for (int i = 0; i < n; i++)
+			offsets[i + 1] += offsets[i];
+		
+		// stabilní rozdělení do řádků, pořadí v řádku zůstává
+		int[] order = new int[count];
+		int[] next = Arrays.copyOf(offsets, n);
+		for (int k = 0; k < count; k++)
+			order[next[rows[k]]++] = k;
+		
+		int[] sortedColumns = new int[count];
+		double[] sortedValues = new double[count];
+		int size = 0;
+		long[] keys = null;
+		for (int i = 0; i < n; i++) {
+			int start = offsets[i];
+			int end = offsets[i + 1];
+			offsets[i] = size;
+			
+			boolean sorted = true;
+			for (int k = start + 1; k < end && sorted; k++)
+				sorted = columns[order[k - 1]] < columns[order[k]];
+			
+			if (!sorted) {
+				// sloupec ve vyšších bitech, pořadí zadání v nižších
+				if (keys == null || keys.length < end - start)
+					keys = new long[end - start];
+				for (int k = start; k < end; k++)
+					keys[k - start] = ((long) columns[order[k]] << 32) | order[k];
+				Arrays.sort(keys, 0, end - start);
+				for (int k = start; k < end; k++)
+					order[k] = (int) keys[k - start];
+			}
+			
+			for (int k = start; k < end; k++) {
+				int element = order[k];
+				if (size > offsets[i] && sortedColumns[size - 1] == columns[element])
+					size--;
+				sortedColumns[size] = columns[element];
+				sortedValues[size] = values[element];
+				size++;
+			}
+		}
+		offsets[n] = size;
+		
+		return new SparseMatrix(n, offsets, Arrays.copyOf(sortedColumns, size), Arrays.copyOf(sortedValues, size));
+	}
+	
+	@Override
+	public double get(int i, int j) {
+		int position = search(i, j);
+		return position >= 0 ? values[position] : 0;
+	}
+	
+	@Override
+	public void set(int i, int j, double value) {
+		int position = search(i, j);
+		if (position >= 0) {
+			values[position] = value;
+			return;
+		}
+		if (value == 0)
+			return;
+		
+		// nový prvek, posunou se všechny prvky následujících řádků
+		position = -position - 1;
+		int size = offsets[n];
+		if (size == columns.length) {
+			int capacity = Math.max(16, size + (size >> 1));
+			columns = Arrays.copyOf(columns, capacity);
+			values = Arrays.copyOf(values, capacity);
+		}
+		System.arraycopy(columns, position, columns, position + 1, size - position);
+		System.arraycopy(values, position, values, position + 1, size - position);
+		columns[position] = j;
+		values[position] = value;
+		for (int row = i + 1; row <= n; row++)
+			offsets[row]++;
+	}
+	
+	@Override
+	public int rowStart(int i) {
+		return offsets[i];
+	}
+	
+	@Override
+	public int rowEnd(int i) {
+		return offsets[i + 1];
+	}
+	
+	@Override
+	public int getColumn(int position) {
+		return columns[position];
+	}
+	
+	@Override
+	public double getValue(int position) {
+		return values[position];
+	}
+	
+	/**
+	 * Binary search of element in row.
+	 * @param i row
+	 * @param j column
+	 * @return position of the element if it is stored,
+	 * {@code -(insertion point) - 1} otherwise
+	 */
+	private int search(int i, int j) {
+		int low = offsets[i];
+		int high = offsets[i + 1] - 1;
+		
+		while (low <= high) {
+			int mid = (low + high) >>> 1;
+			
+			if (columns[mid] < j)
+				low = mid + 1;
+			else if (columns[mid] > j)
+				high = mid - 1;
+			else
+				return mid;
+		}
+		
+		return -(low + 1);
+	}
+}
@@ -0,0 +1,127 @@
+package cz.zcu.pperncka.data;
+
+import java.util.Arrays;
+
+/**
+ * Class holding reusable arrays for computations on a network
+ * with given number of nodes, so that repeated computations do
+ * not allocate memory. A workspace must not be shared by more
+ * threads at once, each thread should use its own workspace.
+ */
+public class Workspace {
+	
+	/** Min distances to each node, used by min trees. */
+	public final double[] minDistance;
+	
+	/** Max distances to each node, used by max trees. */
+	public final double[] maxDistance;
+	
+	/** Tree of min paths, on index i is index of the last arc of path to node i, or -1. */
+	public final int[] minTree;
+	
+	/** Tree of max paths, on index i is index of the last arc of path to node i, or -1. */
+	public final int[] maxTree;
+	
+	/** Array of integers for each node, e.g. indegrees. */
+	public final int[] nodeValues;
+	
+	/** Array of nodes, e.g. a queue of nodes. */
+	public final int[] nodeBuffer;
+	
+	/** Array of results for each node, e.g. divergence nodes. */
+	public final int[] nodeResults;
+	
+	/** Array of labels of nodes, e.g. preorder numbers in a tree. */
+	public final int[] nodeLabels;
+	
+	/** Buffer of arcs of segments for computing the shifted flow. */
+	public final SegmentBuffer segments = new SegmentBuffer();
+	
+	/** Buffer of arc indices, enlarged when needed. */
+	public int[] arcBuffer = new int[16];
+	
+	/** Array of marks of nodes, see {@link #newMark()}. */
+	private final int[] marks;
+	
+	/** Current mark. */
+	private int mark = 0;
+	
+	/** Priority queue, created on demand. */
+	private PriorityQueue queue = null;
+	
+	/** Type of {@code queue}. */
+	private PriorityQueue.Type queueType = null;
+	
+	/**
+	 * Creates workspace for network with given number of nodes.
+	 * @param nodes number of nodes
+	 */
+	public Workspace(int nodes) {
+		this.minDistance = new double[nodes];
+		this.maxDistance = new double[nodes];
+		this.minTree = new int[nodes];
+		this.maxTree = new int[nodes];
+		this.nodeValues = new int[nodes];
+		this.nodeBuffer = new int[nodes];
+		this.nodeResults = new int[nodes];
+		this.nodeLabels = new int[nodes];
+		this.marks = new int[nodes];
+	}
+	
+	/**
+	 * Starts a new marking of nodes. Nodes marked before
+	 * are not marked afterward, without clearing the marks.
+	 * @return new mark
+	 */
+	public int newMark() {
+		mark++;
+		if (mark == Integer.MAX_VALUE) {
+			Arrays.fill(marks, 0);
+			mark = 1;
+		}
+		
+		return mark;
+	}
+	
+	/**
+	 * Marks node with the current mark.
+	 * @param node node
+	 */
+	public void mark(int node) {
+		marks[node] = mark;
+	}
+	
+	/**
+	 * Returns if node is marked with the current mark.
+	 * @param node node
+	 * @return true, if node is marked, false otherwise
+	 */
+	public boolean isMarked(int node) {
+		return marks[node] == mark;
+	}
+	
+	/**
+	 * Ensures that {@code arcBuffer} has at least given capacity.
+	 * Content of the buffer is preserved.
+	 * @param capacity required capacity
+	 */
+	public void ensureArcBuffer(int capacity) {
+		if (arcBuffer.length < capacity)
+			arcBuffer = Arrays.copyOf(arcBuffer, Math.max(capacity, 2 * arcBuffer.length));
+	}
+	
+	/**
+	 * Returns empty priority queue of given type. The queue
+	 * is reused, so it must be emptied before next call.
+	 * @param type type of priority queue
+	 * @return priority queue for all nodes
+	 */
+	public PriorityQueue getQueue(PriorityQueue.Type type) {
+		if (queueType != type) {
+			queue = type.create(marks.length);
+			queueType = type;
+		}
+		
+		return queue;
+	}
+}
@@ -0,0 +1,77 @@
+package cz.zcu.pperncka.io;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Base of writers of files in the background. Data are copied by the
+ * calling thread and written by own thread of the writer, created
+ * on the first write, while the computation continues. Each write
+ * waits for the previous one, so that its copy can be reused and
+ * files are written in order.
+ */
+public abstract class BackgroundWriter {
+	
+	/** Description of written files for reports of failures. */
+	private final String what;
+	
+	/** Thread writing files, created on the first write. */
+	private ExecutorService executor = null;
+	
+	/** File being written, null if there is none. */
+	private Future<?> pending = null;
+	
+	/**
+	 * Constructor.
+	 * @param what description of written files for reports of failures
+	 */
+	protected BackgroundWriter(String what) {
+		this.what = what;
+	}
+	
+	/**
+	 * Waits for the file being written, if there is any. If writing
+	 * failed, the failure is reported and the computation continues,
+	 * since the file is only a copy of the state of the algorithm.
+	 */
+	protected void await() {
+		if (pending == null)
+			return;
+		
+		try {
+			pending.get();
+		} catch (ExecutionException e) {
+			System.err.println(what + " could not be written: " + e.getCause());
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			System.err.println(what + " may not be written, waiting was interrupted.");
+		}
+		pending = null;
+	}
+	
+	/**
+	 * Starts writing a file in the background. The previous
+	 * file must be waited for by {@link #await()} before.
+	 * @param write writes the file from copied data
+	 */
+	protected void submit(Runnable write) {
+		if (executor == null)
+			executor = Executors.newSingleThreadExecutor();
+		pending = executor.submit(write);
+	}
+	
+	/**
+	 * Waits for the file being written, if there is any, and stops
+	 * the thread. The thread is created again by the next write.
+	 */
+	public void close() {
+		if (executor == null)
+			return;
+		
+		await();
+		executor.shutdown();
+		executor = null;
+	}
+}
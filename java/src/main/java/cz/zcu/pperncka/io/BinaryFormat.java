@@ -0,0 +1,314 @@
+package cz.zcu.pperncka.io;
+
+import cz.zcu.pperncka.data.MappedMatrix;
+import cz.zcu.pperncka.data.Matrix;
+import cz.zcu.pperncka.data.Network;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Class with methods for writing network and OD matrix into a binary
+ * file and for loading them from the memory-mapped file. The file
+ * contains a header and sections with arrays of the network in
+ * Compressed Sparse Row format and of nonzero elements of the OD
+ * matrix in the same format. Numbers are little-endian and each
+ * section starts at a multiple of 8 bytes.
+ * <p>
+ * Usage of conversion: {@code BinaryFormat <network.tntp> <odmatrix.tntp> <output.bin>}
+ */
+public class BinaryFormat {
+	
+	/** First bytes of binary file. */
+	private static final int MAGIC = 0x544e5442;
+	
+	/** Version of format of binary file. */
+	private static final int VERSION = 1;
+	
+	/** Size of header of binary file in bytes. */
+	private static final int HEADER_SIZE = 6 * Integer.BYTES;
+	
+	/** Order of bytes of numbers. */
+	private static final ByteOrder ORDER = ByteOrder.LITTLE_ENDIAN;
+	
+	/**
+	 * Converts TNTP files into a binary file.
+	 * @param args paths to network, OD matrix and output file
+	 */
+	public static void main(String[] args) {
+		if (args.length < 3) {
+			System.out.println("Usage: BinaryFormat <network.tntp> <odmatrix.tntp> <output.bin>");
+			return;
+		}
+		
+		long startTime = System.currentTimeMillis();
+		Network network = TNTPParser.parseNetwork(args[0]);
+		Matrix odMatrix = TNTPParser.parseODMatrix(args[1], true);
+		write(network, odMatrix, args[2]);
+		long endTime = System.currentTimeMillis();
+		System.out.println("Converted to " + args[2] + " (" + (endTime - startTime) + "ms)");
+	}
+	
+	/**
+	 * Returns if the file is a binary file written by
+	 * {@link #write(Network, Matrix, String)}.
+	 * @param path path to the file
+	 * @return true, if the file starts with the binary header
+	 */
+	public static boolean isBinary(String path) {
+		try (FileChannel channel = FileChannel.open(Path.of(path))) {
+			ByteBuffer magic = ByteBuffer.allocate(Integer.BYTES).order(ORDER);
+			while (magic.hasRemaining())
+				if (channel.read(magic) < 0)
+					return false;
+			
+			return magic.getInt(0) == MAGIC;
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+	
+	/**
+	 * Writes network and nonzero elements of OD matrix into a binary
+	 * file. The file is written to a temporary file which then replaces
+	 * the file, so that running processes mapping the file are not affected.
+	 * @param network  network
+	 * @param odMatrix OD matrix with rank equal to number of zones of the network
+	 * @param path     path to the binary file
+	 * @throws IllegalArgumentException if rank of the matrix differs from number of zones
+	 */
+	public static void write(Network network, Matrix odMatrix, String path) {
+		if (odMatrix.n != network.zones)
+			throw new IllegalArgumentException("OD matrix has different size than number of zones of network.");
+		
+		Network.Arc[] arcs = network.getArcs();
+		int nonzeros = 0;
+		for (int i = 0; i < odMatrix.n; i++)
+			for (int k = odMatrix.rowStart(i); k < odMatrix.rowEnd(i); k++)
+				if (odMatrix.getValue(k) != 0)
+					nonzeros++;
+		
+		Path temporary = Path.of(path + ".tmp");
+		try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+				StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+			
+			ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ORDER);
+			header.putInt(MAGIC).putInt(VERSION);
+			header.putInt(network.nodes).putInt(network.zones).putInt(arcs.length).putInt(nonzeros);
+			writeSection(channel, header);
+			
+			ByteBuffer section = allocate(Integer.BYTES, network.nodes + 1);
+			for (int node = 0; node <= network.nodes; node++)
+				section.putInt(node < network.nodes ? network.firstArcOf(node) : arcs.length);
+			writeSection(channel, section);
+			
+			section = allocate(Integer.BYTES, arcs.length);
+			for (Network.Arc arc : arcs)
+				section.putInt(arc.endNode);
+			writeSection(channel, section);
+			
+			section = allocate(Double.BYTES, arcs.length);
+			for (Network.Arc arc : arcs)
+				section.putDouble(arc.getCapacity());
+			writeSection(channel, section);
+			
+			section = allocate(Double.BYTES, arcs.length);
+			for (Network.Arc arc : arcs)
+				section.putDouble(arc.getFreeFlow());
+			writeSection(channel, section);
+			
+			section = allocate(Integer.BYTES, network.zones + 1);
+			int offset = 0;
+			for (int i = 0; i < network.zones; i++) {
+				section.putInt(offset);
+				for (int k = odMatrix.rowStart(i); k < odMatrix.rowEnd(i); k++)
+					if (odMatrix.getValue(k) != 0)
+						offset++;
+			}
+			section.putInt(offset);
+			writeSection(channel, section);
+			
+			section = allocate(Integer.BYTES, nonzeros);
+			for (int i = 0; i < network.zones; i++)
+				for (int k = odMatrix.rowStart(i); k < odMatrix.rowEnd(i); k++)
+					if (odMatrix.getValue(k) != 0)
+						section.putInt(odMatrix.getColumn(k));
+			writeSection(channel, section);
+			
+			section = allocate(Double.BYTES, nonzeros);
+			for (int i = 0; i < network.zones; i++)
+				for (int k = odMatrix.rowStart(i); k < odMatrix.rowEnd(i); k++)
+					if (odMatrix.getValue(k) != 0)
+						section.putDouble(odMatrix.getValue(k));
+			writeSection(channel, section);
+			
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+		
+		try {
+			Files.move(temporary, Path.of(path), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+	
+	/**
+	 * Loads network from the binary file. Sections of the file are
+	 * mapped into memory and copied into arrays of the network by
+	 * bulk operations, arrays of the network are written during
+	 * the computation.
+	 * @param path path to the binary file
+	 * @return network
+	 * @throws IllegalArgumentException if the file is not a binary file
+	 */
+	public static Network readNetwork(String path) {
+		try (FileChannel channel = FileChannel.open(Path.of(path))) {
+			Sections sections = new Sections(channel, path);
+			
+			int[] indices = new int[sections.nodes + 1];
+			int[] endNodes = new int[sections.arcs];
+			double[] capacities = new double[sections.arcs];
+			double[] freeFlows = new double[sections.arcs];
+			sections.next(Integer.BYTES, indices.length).asIntBuffer().get(indices);
+			sections.next(Integer.BYTES, endNodes.length).asIntBuffer().get(endNodes);
+			sections.next(Double.BYTES, capacities.length).asDoubleBuffer().get(capacities);
+			sections.next(Double.BYTES, freeFlows.length).asDoubleBuffer().get(freeFlows);
+			
+			return new Network(indices, endNodes, capacities, freeFlows, sections.zones);
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+	
+	/**
+	 * Loads OD matrix from the binary file. The matrix views
+	 * mapped sections of the file, nothing is copied.
+	 * @param path path to the binary file
+	 * @return OD matrix viewing the file
+	 * @throws IllegalArgumentException if the file is not a binary file
+	 */
+	public static Matrix readODMatrix(String path) {
+		try (FileChannel channel = FileChannel.open(Path.of(path))) {
+			Sections sections = new Sections(channel, path);
+			sections.skip(Integer.BYTES, sections.nodes + 1);
+			sections.skip(Integer.BYTES, sections.arcs);
+			sections.skip(Double.BYTES, sections.arcs);
+			sections.skip(Double.BYTES, sections.arcs);
+			
+			return new MappedMatrix(sections.zones,
+					sections.next(Integer.BYTES, sections.zones + 1).asIntBuffer(),
+					sections.next(Integer.BYTES, sections.nonzeros).asIntBuffer(),
+					sections.next(Double.BYTES, sections.nonzeros).asDoubleBuffer());
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+	
+	/**
+	 * Allocates buffer for a section.
+	 * @param size  size of element in bytes
+	 * @param count number of elements
+	 * @return buffer for the section
+	 */
+	private static ByteBuffer allocate(int size, int count) {
+		return ByteBuffer.allocate(size * count).order(ORDER);
+	}
+	
+	/**
+	 * Writes filled buffer and padding to a multiple of 8 bytes.
+	 * @param channel channel of the file
+	 * @param section filled buffer of a section
+	 * @throws IOException if an I/O error occurs
+	 */
+	private static void writeSection(FileChannel channel, ByteBuffer section) throws IOException {
+		section.flip();
+		while (section.hasRemaining())
+			channel.write(section);
+		
+		ByteBuffer padding = ByteBuffer.allocate((int) (-channel.position() & 7));
+		while (padding.hasRemaining())
+			channel.write(padding);
+	}
+	
+	/** Header of binary file and mapping of its sections in order. */
+	private static class Sections {
+		
+		/** Channel of the file. */
+		private final FileChannel channel;
+		
+		/** Path to the file for messages. */
+		private final String path;
+		
+		/** Number of nodes of the network. */
+		private final int nodes;
+		
+		/** Number of zones of the network. */
+		private final int zones;
+		
+		/** Number of arcs of the network. */
+		private final int arcs;
+		
+		/** Number of nonzero elements of the OD matrix. */
+		private final int nonzeros;
+		
+		/** Offset of the next section in the file. */
+		private long offset = HEADER_SIZE;
+		
+		/**
+		 * Reads header of the binary file.
+		 * @param channel channel of the file
+		 * @param path    path to the file for messages
+		 * @throws IOException if an I/O error occurs
+		 * @throws IllegalArgumentException if the file is not a binary file
+		 */
+		private Sections(FileChannel channel, String path) throws IOException {
+			this.channel = channel;
+			this.path = path;
+			if (channel.size() < HEADER_SIZE)
+				throw new IllegalArgumentException(path + " is not a binary network file.");
+			
+			ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE).order(ORDER);
+			if (header.getInt() != MAGIC || header.getInt() != VERSION)
+				throw new IllegalArgumentException(path + " is not a binary network file.");
+			
+			nodes = header.getInt();
+			zones = header.getInt();
+			arcs = header.getInt();
+			nonzeros = header.getInt();
+		}
+		
+		/**
+		 * Maps the next section read-only.
+		 * @param size  size of element in bytes
+		 * @param count number of elements
+		 * @return buffer of the section
+		 * @throws IOException if an I/O error occurs
+		 * @throws IllegalArgumentException if the file is truncated
+		 */
+		private ByteBuffer next(int size, int count) throws IOException {
+			if (offset + (long) size * count > channel.size())
+				throw new IllegalArgumentException("Binary network file " + path + " is truncated.");
+			
+			MappedByteBuffer section = channel.map(FileChannel.MapMode.READ_ONLY, offset, (long) size * count);
+			skip(size, count);
+			return section.order(ORDER);
+		}
+		
+		/**
+		 * Skips the next section.
+		 * @param size  size of element in bytes
+		 * @param count number of elements
+		 */
+		private void skip(int size, int count) {
+			offset += ((long) size * count + 7) & ~7L;
+		}
+	}
+}
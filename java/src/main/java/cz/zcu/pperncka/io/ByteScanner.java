@@ -0,0 +1,335 @@
+package cz.zcu.pperncka.io;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Scanner of ASCII text reading bytes directly from a buffer, either
+ * from a region of a whole buffer, e.g. memory-mapped file, or from
+ * a channel through a reused buffer. Numbers are parsed from bytes
+ * without creating strings, so that large TNTP files are parsed with
+ * no allocation per token.
+ */
+class ByteScanner {
+	
+	/** Exactly representable powers of ten. */
+	private static final double[] POWERS_OF_TEN = {
+			1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10,
+			1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+	};
+	
+	/** Channel from which the buffer is filled, null if the buffer contains all data. */
+	private final ReadableByteChannel channel;
+	
+	/** Buffer with scanned bytes, only absolute access is used. */
+	private final ByteBuffer buffer;
+	
+	/** Position of the next byte in the buffer. */
+	private int position;
+	
+	/** Position after the last valid byte in the buffer. */
+	private int limit;
+	
+	/** Offset in the input of the byte on position 0 of the buffer. */
+	private long offset;
+	
+	/** Bytes of the last parsed double, for the slow path of parsing. */
+	private byte[] token = new byte[32];
+	
+	/**
+	 * Creates scanner of a region of the buffer.
+	 * @param buffer buffer with data
+	 * @param start  position of the first byte of the region
+	 * @param end    position after the last byte of the region
+	 */
+	public ByteScanner(ByteBuffer buffer, int start, int end) {
+		this.channel = null;
+		this.buffer = buffer;
+		this.position = start;
+		this.limit = end;
+	}
+	
+	/**
+	 * Creates scanner of data read from the channel.
+	 * @param channel    channel with data
+	 * @param bufferSize size of buffer used for reading
+	 */
+	public ByteScanner(ReadableByteChannel channel, int bufferSize) {
+		this.channel = channel;
+		this.buffer = ByteBuffer.allocate(bufferSize);
+	}
+	
+	/**
+	 * Returns offset of the next byte in the input.
+	 * @return offset of the next byte from the start of the buffer or channel
+	 */
+	public long position() {
+		return offset + position;
+	}
+	
+	/**
+	 * Returns the next byte without consuming it.
+	 * @return the next byte, -1 at the end of input
+	 * @throws IOException if reading of the channel fails
+	 */
+	public int peek() throws IOException {
+		if (position == limit && !fill())
+			return -1;
+		
+		return buffer.get(position) & 0xff;
+	}
+	
+	/**
+	 * Consumes the next byte returned by {@link #peek()}.
+	 */
+	public void skip() {
+		position++;
+	}
+	
+	/**
+	 * Skips spaces, tabs and carriage returns, but not line ends.
+	 * @return the next byte, -1 at the end of input
+	 * @throws IOException if reading of the channel fails
+	 */
+	public int skipSpaces() throws IOException {
+		int c;
+		while ((c = peek()) == ' ' || c == '\t' || c == '\r')
+			position++;
+		
+		return c;
+	}
+	
+	/**
+	 * Skips all whitespaces including line ends.
+	 * @return the next byte, -1 at the end of input
+	 * @throws IOException if reading of the channel fails
+	 */
+	public int skipWhitespaces() throws IOException {
+		int c;
+		while ((c = peek()) == ' ' || c == '\t' || c == '\r' || c == '\n')
+			position++;
+		
+		return c;
+	}
+	
+	/**
+	 * Skips the rest of the current line including its end.
+	 * @throws IOException if reading of the channel fails
+	 */
+	public void skipLine() throws IOException {
+		int c;
+		while ((c = peek()) != -1) {
+			position++;
+			if (c == '\n')
+				return;
+		}
+	}
+	
+	/**
+	 * Skips spaces and the following token up to a whitespace.
+	 * @throws IOException if reading of the channel fails
+	 */
+	public void skipToken() throws IOException {
+		int c = skipSpaces();
+		while (c != -1 && c != ' ' && c != '\t' && c != '\r' && c != '\n') {
+			position++;
+			c = peek();
+		}
+	}
+	
+	/**
+	 * Reads the rest of the current line, used only for headers.
+	 * @return the line without its end, null at the end of input
+	 * @throws IOException if reading of the channel fails
+	 */
+	public String nextLine() throws IOException {
+		if (peek() == -1)
+			return null;
+		
+		StringBuilder line = new StringBuilder();
+		int c;
+		while ((c = peek()) != -1) {
+			position++;
+			if (c == '\n')
+				break;
+			line.append((char) c);
+		}
+		
+		return line.toString();
+	}
+	
+	/**
+	 * Consumes given word after spaces.
+	 * @param word expected word
+	 * @throws IOException if reading of the channel fails
+	 * @throws IllegalArgumentException if the input does not continue with the word
+	 */
+	public void expect(String word) throws IOException {
+		skipSpaces();
+		for (int i = 0; i < word.length(); i++) {
+			if (peek() != word.charAt(i))
+				throw unexpected("'" + word + "'");
+			position++;
+		}
+	}
+	
+	/**
+	 * Parses integer after spaces.
+	 * @return parsed integer
+	 * @throws IOException if reading of the channel fails
+	 * @throws IllegalArgumentException if there is no integer
+	 */
+	public int nextInt() throws IOException {
+		int c = skipSpaces();
+		boolean negative = c == '-';
+		if (c == '-' || c == '+') {
+			position++;
+			c = peek();
+		}
+		if (c < '0' || c > '9')
+			throw unexpected("integer");
+		
+		int value = 0;
+		while (c >= '0' && c <= '9') {
+			value = 10 * value + (c - '0');
+			position++;
+			c = peek();
+		}
+		
+		return negative ? -value : value;
+	}
+	
+	/**
+	 * Parses decimal number after spaces. Numbers with at most 15
+	 * significant digits and small exponent, i.e. all usual numbers of
+	 * TNTP files, are computed exactly by one division or multiplication.
+	 * Other numbers are parsed by {@link Double#parseDouble(String)},
+	 * so the result is always the same as by it.
+	 * @return parsed number
+	 * @throws IOException if reading of the channel fails
+	 * @throws IllegalArgumentException if there is no number
+	 */
+	public double nextDouble() throws IOException {
+		int c = skipSpaces();
+		int length = 0;
+		boolean negative = c == '-';
+		if (c == '-' || c == '+') {
+			length = append(length, c);
+			c = peek();
+		}
+		
+		long mantissa = 0;
+		int digits = 0;
+		int exponent = 0;
+		boolean anyDigit = false;
+		while (c >= '0' && c <= '9') {
+			anyDigit = true;
+			if (digits < 18) {
+				mantissa = 10 * mantissa + (c - '0');
+				if (mantissa != 0)
+					digits++;
+			} else
+				exponent++;
+			length = append(length, c);
+			c = peek();
+		}
+		if (c == '.') {
+			length = append(length, c);
+			c = peek();
+			while (c >= '0' && c <= '9') {
+				anyDigit = true;
+				if (digits < 18) {
+					mantissa = 10 * mantissa + (c - '0');
+					if (mantissa != 0)
+						digits++;
+					exponent--;
+				}
+				length = append(length, c);
+				c = peek();
+			}
+		}
+		if (!anyDigit)
+			throw unexpected("number");
+		
+		boolean exact = digits <= 15;
+		if (c == 'e' || c == 'E') {
+			length = append(length, c);
+			c = peek();
+			if (c == '-' || c == '+') {
+				length = append(length, c);
+				c = peek();
+			}
+			if (c < '0' || c > '9')
+				throw unexpected("exponent");
+			
+			while (c >= '0' && c <= '9') {
+				length = append(length, c);
+				c = peek();
+			}
+			// exponent se zpracuje pomalou cestou
+			exact = false;
+		}
+		
+		if (exact && exponent >= -22 && exponent <= 22) {
+			double value = exponent < 0
+					? mantissa / POWERS_OF_TEN[-exponent]
+					: mantissa * POWERS_OF_TEN[exponent];
+			return negative ? -value : value;
+		}
+		
+		return Double.parseDouble(new String(token, 0, length, StandardCharsets.ISO_8859_1));
+	}
+	
+	/**
+	 * Consumes the next byte and appends it to {@code token}.
+	 * @param length current length of the token
+	 * @param c      the next byte
+	 * @return new length of the token
+	 */
+	private int append(int length, int c) {
+		if (length == token.length)
+			token = Arrays.copyOf(token, 2 * length);
+		token[length] = (byte) c;
+		position++;
+		
+		return length + 1;
+	}
+	
+	/**
+	 * Reads next bytes from the channel into the buffer, all bytes
+	 * in the buffer must be consumed.
+	 * @return false at the end of input, true otherwise
+	 * @throws IOException if reading of the channel fails
+	 */
+	private boolean fill() throws IOException {
+		if (channel == null)
+			return false;
+		
+		offset += position;
+		position = 0;
+		limit = 0;
+		buffer.clear();
+		int read;
+		do {
+			read = channel.read(buffer);
+		} while (read == 0);
+		
+		if (read < 0)
+			return false;
+		
+		limit = read;
+		return true;
+	}
+	
+	/**
+	 * Creates exception for unexpected input.
+	 * @param expected description of expected input
+	 * @return exception with position of the unexpected input
+	 */
+	private IllegalArgumentException unexpected(String expected) {
+		return new IllegalArgumentException("Expected " + expected + " at byte " + position() + ".");
+	}
+}
@@ -0,0 +1,281 @@
+package cz.zcu.pperncka.io;
+
+import cz.zcu.pperncka.data.Bush;
+import cz.zcu.pperncka.data.Network;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.IntFunction;
+
+/**
+ * Class representing state of the algorithm saved to a binary file,
+ * with methods for writing and reading it. The file contains number
+ * of completed iterations, the best lower bound of objective function,
+ * flows of all arcs and for each bush its arcs and arcs with nonzero
+ * flow on the bush, each as index of the arc and its flow.
+ */
+public class Checkpoint {
+	
+	/** First bytes of checkpoint file. */
+	private static final int MAGIC = 0x42434b50;
+	
+	/** Version of format of checkpoint file. */
+	private static final int VERSION = 2;
+	
+	/** Bit of stored index of arc marking arc which is not in the bush. */
+	private static final int REMOVED = 0x80000000;
+	
+	/** Size of header of checkpoint file in bytes. */
+	private static final int HEADER_SIZE = 6 * Integer.BYTES + Double.BYTES;
+	
+	/** Size of one stored arc of bush in bytes. */
+	private static final int ENTRY_SIZE = Integer.BYTES + Double.BYTES;
+	
+	/** Size of one buffer of encoded state in bytes. */
+	private static final int CHUNK_SIZE = 1 << 24;
+	
+	/** Number of iterations completed before the checkpoint. */
+	public final int iteration;
+	
+	/** Best lower bound of objective function known at the checkpoint. */
+	public final double maxLb;
+	
+	/** Flows of arcs of the network. */
+	public final double[] flows;
+	
+	/** Bushes of origins with demand sorted by their roots. */
+	public final Bush[] bushes;
+	
+	/**
+	 * Constructor of loaded checkpoint.
+	 * @param iteration number of completed iterations
+	 * @param maxLb     best lower bound of objective function
+	 * @param flows     flows of arcs
+	 * @param bushes    bushes sorted by their roots
+	 */
+	private Checkpoint(int iteration, double maxLb, double[] flows, Bush[] bushes) {
+		this.iteration = iteration;
+		this.maxLb = maxLb;
+		this.flows = flows;
+		this.bushes = bushes;
+	}
+	
+	/**
+	 * Encodes state of the algorithm into buffers in the format of
+	 * checkpoint file. Only memory is copied, so the buffers can be
+	 * written by {@link #write(List, String)} in another thread while
+	 * the algorithm continues. Size of each buffer is bounded, so the
+	 * state may be larger than a single buffer can hold.
+	 * @param network   network with current flows
+	 * @param bushes    bushes sorted by their roots
+	 * @param iteration number of completed iterations
+	 * @param maxLb     best lower bound of objective function
+	 * @param buffers   buffers of the previous checkpoint to be reused, may be null
+	 * @return buffers with encoded state, each between position 0 and its limit
+	 */
+	public static List<ByteBuffer> encode(Network network, Bush[] bushes,
+										  int iteration, double maxLb, List<ByteBuffer> buffers) {
+		return encode(network, bushes, iteration, maxLb, buffers, CHUNK_SIZE);
+	}
+	
+	/**
+	 * Encodes state of the algorithm into buffers of given size.
+	 * @param network   network with current flows
+	 * @param bushes    bushes sorted by their roots
+	 * @param iteration number of completed iterations
+	 * @param maxLb     best lower bound of objective function
+	 * @param buffers   buffers of the previous checkpoint to be reused, may be null
+	 * @param chunkSize size of each buffer in bytes, at least {@link #HEADER_SIZE}
+	 * @return buffers with encoded state, each between position 0 and its limit
+	 */
+	static List<ByteBuffer> encode(Network network, Bush[] bushes, int iteration, double maxLb,
+								   List<ByteBuffer> buffers, int chunkSize) {
+		Chunks chunks = new Chunks(buffers == null ? new ArrayList<>() : buffers, chunkSize);
+		int arcs = network.getArcs().length;
+		
+		ByteBuffer buffer = chunks.reserve(HEADER_SIZE);
+		buffer.putInt(MAGIC);
+		buffer.putInt(VERSION);
+		buffer.putInt(iteration);
+		buffer.putDouble(maxLb);
+		buffer.putInt(arcs);
+		buffer.putInt(network.zones);
+		buffer.putInt(bushes.length);
+		for (int i = 0; i < arcs; i++)
+			chunks.reserve(Double.BYTES).putDouble(network.getFlow(i));
+		
+		for (Bush bush : bushes) {
+			chunks.reserve(Integer.BYTES).putInt(bush.root);
+			ByteBuffer countBuffer = chunks.reserve(Integer.BYTES);
+			int countPosition = countBuffer.position();
+			countBuffer.putInt(0);
+			
+			int count = 0;
+			for (int i = 0; i < bush.size(); i++) {
+				boolean exists = bush.arcExistsAt(i);
+				double flow = bush.getFlow(i);
+				if (!exists && flow == 0)
+					continue;
+				
+				buffer = chunks.reserve(ENTRY_SIZE);
+				buffer.putInt(exists ? bush.getArc(i) : bush.getArc(i) | REMOVED);
+				buffer.putDouble(flow);
+				count++;
+			}
+			countBuffer.putInt(countPosition, count);
+		}
+		
+		return chunks.finish();
+	}
+	
+	/**
+	 * Writes encoded state to a file. The state is written to a temporary
+	 * file which then replaces the file, so the file always contains
+	 * a complete checkpoint, even if writing is interrupted.
+	 * @param data buffers returned by {@link #encode}
+	 * @param file path to the checkpoint file
+	 */
+	public static void write(List<ByteBuffer> data, String file) {
+		Path path = Path.of(file);
+		Path temporary = Path.of(file + ".tmp");
+		
+		try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+				StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+			
+			for (ByteBuffer buffer : data) {
+				ByteBuffer view = buffer.duplicate();
+				while (view.hasRemaining())
+					channel.write(view);
+			}
+			
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+		
+		try {
+			Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+	
+	/**
+	 * Reads checkpoint of the algorithm on given network from a file.
+	 * @param file    path to the checkpoint file
+	 * @param network network for which the checkpoint was written
+	 * @param factory creates empty bush with given root
+	 * @return loaded checkpoint
+	 * @throws IllegalArgumentException if the file is not a checkpoint of the network
+	 */
+	public static Checkpoint read(String file, Network network, IntFunction<Bush> factory) {
+		try (DataInputStream in = new DataInputStream(
+				new BufferedInputStream(new FileInputStream(file), 1 << 16))) {
+			
+			if (in.readInt() != MAGIC || in.readInt() != VERSION)
+				throw new IllegalArgumentException(file + " is not a checkpoint file.");
+			
+			int iteration = in.readInt();
+			double maxLb = in.readDouble();
+			int arcs = in.readInt();
+			int zones = in.readInt();
+			int count = in.readInt();
+			if (arcs != network.getArcs().length || zones != network.zones)
+				throw new IllegalArgumentException("Checkpoint " + file + " was written for another network.");
+			
+			double[] flows = new double[arcs];
+			for (int i = 0; i < arcs; i++)
+				flows[i] = in.readDouble();
+			
+			Bush[] bushes = new Bush[count];
+			for (int i = 0; i < count; i++) {
+				Bush bush = factory.apply(in.readInt());
+				int entries = in.readInt();
+				for (int j = 0; j < entries; j++) {
+					int arc = in.readInt();
+					double flow = in.readDouble();
+					
+					if ((arc & REMOVED) == 0)
+						bush.addArc(arc);
+					bush.addFlow(arc & ~REMOVED, flow);
+				}
+				bushes[i] = bush;
+			}
+			
+			return new Checkpoint(iteration, maxLb, flows, bushes);
+			
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+	
+	/** Buffers of bounded size, which are filled one after another. */
+	private static class Chunks {
+		
+		/** Filled and reused buffers. */
+		private final List<ByteBuffer> buffers;
+		
+		/** Size of each buffer in bytes. */
+		private final int size;
+		
+		/** Index of the buffer being filled, -1 before the first one. */
+		private int index = -1;
+		
+		/** Buffer being filled, null before the first one. */
+		private ByteBuffer current = null;
+		
+		/**
+		 * Constructor.
+		 * @param buffers buffers to be reused
+		 * @param size    size of each buffer in bytes
+		 */
+		private Chunks(List<ByteBuffer> buffers, int size) {
+			this.buffers = buffers;
+			this.size = size;
+		}
+		
+		/**
+		 * Returns buffer with at least given number of remaining bytes.
+		 * The next buffer is taken, if the current one is full.
+		 * @param bytes required number of remaining bytes, at most size of buffer
+		 * @return buffer being filled
+		 */
+		private ByteBuffer reserve(int bytes) {
+			if (current != null && current.remaining() >= bytes)
+				return current;
+			
+			if (current != null)
+				current.flip();
+			index++;
+			if (index == buffers.size())
+				buffers.add(ByteBuffer.allocate(size));
+			else if (buffers.get(index).capacity() != size)
+				buffers.set(index, ByteBuffer.allocate(size));
+			
+			current = buffers.get(index);
+			current.clear();
+			return current;
+		}
+		
+		/**
+		 * Finishes filling and drops buffers which were not used.
+		 * @return filled buffers, each between position 0 and its limit
+		 */
+		private List<ByteBuffer> finish() {
+			current.flip();
+			while (buffers.size() > index + 1)
+				buffers.remove(buffers.size() - 1);
+			
+			return buffers;
+		}
+	}
+}
@@ -0,0 +1,53 @@
+package cz.zcu.pperncka.io;
+
+import cz.zcu.pperncka.data.Bush;
+import cz.zcu.pperncka.data.Network;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+
+/**
+ * Writer of checkpoints of the algorithm to a file, see {@link Checkpoint}.
+ * State is encoded into buffers at the end of an iteration and written in
+ * the background while next iterations proceed, the buffers are reused.
+ */
+public class CheckpointWriter extends BackgroundWriter {
+	
+	/** Path to the checkpoint file. */
+	private final String file;
+	
+	/** State is written after every interval-th iteration. */
+	private final int interval;
+	
+	/** Buffers with encoded state, reused by next checkpoints. */
+	private List<ByteBuffer> buffers = null;
+	
+	/**
+	 * Constructor.
+	 * @param file     path to the checkpoint file
+	 * @param interval state is written after every interval-th iteration
+	 */
+	public CheckpointWriter(String file, int interval) {
+		super("Checkpoint");
+		this.file = file;
+		this.interval = interval;
+	}
+	
+	/**
+	 * Copies state of the algorithm after given number of completed
+	 * iterations and writes it in the background, if the checkpoint is due.
+	 * @param network   network with current flows
+	 * @param bushes    bushes sorted by their roots
+	 * @param iteration number of completed iterations
+	 * @param maxLb     best lower bound of objective function
+	 */
+	public void write(Network network, Bush[] bushes, int iteration, double maxLb) {
+		if (iteration % interval != 0)
+			return;
+		
+		await();
+		buffers = Checkpoint.encode(network, bushes, iteration, maxLb, buffers);
+		List<ByteBuffer> data = buffers;
+		submit(() -> Checkpoint.write(data, file));
+	}
+}
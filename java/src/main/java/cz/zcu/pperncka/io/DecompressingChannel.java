@@ -0,0 +1,140 @@
+package cz.zcu.pperncka.io;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Channel reading gzip-compressed file, which is decompressed by
+ * a separate thread, so that decompression overlaps with processing
+ * of the data. The thread fills buffers from a fixed pool and passes
+ * them to the reader through a bounded queue, so at most the pool
+ * of decompressed data is held in memory and buffers are reused.
+ */
+class DecompressingChannel implements ReadableByteChannel {
+	
+	/** Empty buffer marking the end of data in the queue. */
+	private static final ByteBuffer END = ByteBuffer.allocate(0);
+	
+	/** Decompressed stream of the file. */
+	private final InputStream in;
+	
+	/** Size of each buffer in bytes. */
+	private final int bufferSize;
+	
+	/** Buffers to be filled by the decompressing thread. */
+	private final BlockingQueue<ByteBuffer> free;
+	
+	/** Filled buffers to be read in order, followed by {@link #END}. */
+	private final BlockingQueue<ByteBuffer> filled;
+	
+	/** Thread decompressing the file. */
+	private final Thread thread;
+	
+	/** Buffer being read, null before the first read. */
+	private ByteBuffer current = null;
+	
+	/** Error of decompression, null if there is none. */
+	private volatile IOException error = null;
+	
+	/** True after the channel is closed. */
+	private volatile boolean closed = false;
+	
+	/**
+	 * Opens the compressed file and starts its decompression.
+	 * @param path       path to the compressed file
+	 * @param bufferSize size of each buffer in bytes
+	 * @param buffers    number of buffers, i.e. max. number of buffers decompressed ahead
+	 * @throws IOException if the file cannot be opened or it is not compressed by gzip
+	 */
+	public DecompressingChannel(Path path, int bufferSize, int buffers) throws IOException {
+		InputStream file = Files.newInputStream(path);
+		try {
+			this.in = new GZIPInputStream(file, bufferSize);
+		} catch (IOException e) {
+			file.close();
+			throw e;
+		}
+		this.bufferSize = bufferSize;
+		this.free = new ArrayBlockingQueue<>(buffers);
+		this.filled = new ArrayBlockingQueue<>(buffers + 1);
+		for (int i = 0; i < buffers; i++)
+			free.add(ByteBuffer.allocate(bufferSize));
+		
+		thread = new Thread(this::decompress, "Decompression of " + path.getFileName());
+		thread.setDaemon(true);
+		thread.start();
+	}
+	
+	/**
+	 * Decompresses the file into free buffers and passes them to
+	 * the reader, ends with {@link #END} also when decompression fails.
+	 */
+	private void decompress() {
+		try (in) {
+			while (true) {
+				ByteBuffer buffer = free.take();
+				int read = in.readNBytes(buffer.array(), 0, bufferSize);
+				buffer.clear().limit(read);
+				if (read > 0)
+					filled.put(buffer);
+				if (read < bufferSize)
+					break;
+			}
+		} catch (IOException e) {
+			error = e;
+		} catch (InterruptedException e) {
+			return;
+		}
+		
+		// ve frontě je vždy místo pro konec
+		filled.add(END);
+	}
+	
+	@Override
+	public int read(ByteBuffer dst) throws IOException {
+		if (closed)
+			throw new ClosedChannelException();
+		
+		if (current == null || !current.hasRemaining() && current != END) {
+			if (current != null)
+				free.add(current);
+			try {
+				current = filled.take();
+			} catch (InterruptedException e) {
+				throw new InterruptedIOException();
+			}
+		}
+		if (current == END) {
+			if (error != null)
+				throw error;
+			return -1;
+		}
+		
+		int read = Math.min(current.remaining(), dst.remaining());
+		int limit = current.limit();
+		current.limit(current.position() + read);
+		dst.put(current);
+		current.limit(limit);
+		return read;
+	}
+	
+	@Override
+	public boolean isOpen() {
+		return !closed;
+	}
+	
+	@Override
+	public void close() {
+		closed = true;
+		thread.interrupt();
+	}
+}
@@ -0,0 +1,248 @@
+package cz.zcu.pperncka.io;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+
+/**
+ * Formatter of doubles with fixed number of decimal places into a byte
+ * array, which gives the same text as {@code String.format("%.15f")}
+ * without creating objects. The formatter rounds shortest decimal
+ * digits of the double, i.e. digits of {@link Double#toString(double)},
+ * half up. The digits are found by exact integer arithmetic on 128 bits.
+ * Values for which it is not enough, i.e. very large values and rare
+ * very small values near the half of the last place, are formatted by
+ * {@link String#format(Locale, String, Object...)}.
+ */
+class DoubleFormatter {
+	
+	/** Number of decimal places. */
+	public static final int DECIMALS = 15;
+	
+	/** Max. number of bytes written by {@link #format(double, byte[], int)}. */
+	public static final int MAX_LENGTH = 1 + 309 + 1 + DECIMALS;
+	
+	/** Powers of ten fitting in long. */
+	private static final long[] POWERS_OF_TEN = new long[19];
+	
+	static {
+		POWERS_OF_TEN[0] = 1;
+		for (int i = 1; i < POWERS_OF_TEN.length; i++)
+			POWERS_OF_TEN[i] = 10 * POWERS_OF_TEN[i - 1];
+	}
+	
+	/** Lowest value whose shortest digits are searched, smaller values are rounded directly. */
+	private static final double MIN_SHORTEST = 0.1;
+	
+	/** Values from this one have no fractional part and are formatted by {@code String.format}. */
+	private static final double MAX_SHORTEST = 0x1p53;
+	
+	/** Mask of significand of double. */
+	private static final long SIGNIFICAND_MASK = (1L << 52) - 1;
+	
+	/**
+	 * Writes value with {@link #DECIMALS} decimal places into the buffer.
+	 * @param value    formatted value
+	 * @param buffer   buffer with at least {@link #MAX_LENGTH} bytes after the position
+	 * @param position position of the first written byte
+	 * @return position after the last written byte
+	 */
+	public static int format(double value, byte[] buffer, int position) {
+		long bits = Double.doubleToRawLongBits(value);
+		if (value != value || value == Double.POSITIVE_INFINITY || value == Double.NEGATIVE_INFINITY
+				|| Math.abs(value) >= MAX_SHORTEST)
+			return formatSlowly(value, buffer, position);
+		
+		int start = position;
+		if (bits < 0)
+			buffer[position++] = '-';
+		bits &= Long.MAX_VALUE;
+		
+		int end = Math.abs(value) >= MIN_SHORTEST
+				? formatShortest(bits, buffer, position)
+				: formatSmall(bits, buffer, position);
+		if (end < 0)
+			return formatSlowly(value, buffer, start);
+		
+		return end;
+	}
+	
+	/**
+	 * Finds the shortest decimal digits which are rounded to the value,
+	 * i.e. the shortest multiple of a power of ten in the interval of
+	 * reals rounded to the value, and writes them rounded half up.
+	 * Limits of the interval and value are scaled by 4 * 2^-exponent,
+	 * so that they are integers.
+	 * @param bits     bits of positive value between {@link #MIN_SHORTEST} and {@link #MAX_SHORTEST}
+	 * @param buffer   buffer
+	 * @param position position of the first written byte
+	 * @return position after the last written byte
+	 */
+	private static int formatShortest(long bits, byte[] buffer, int position) {
+		int biasedExponent = (int) (bits >>> 52);
+		long significand = (bits & SIGNIFICAND_MASK) | (1L << 52);
+		int shift = 2 - (biasedExponent - 1075);
+		
+		// pod mocninou dvou je sousední hodnota blíž
+		long lower = (bits & SIGNIFICAND_MASK) == 0 ? 4 * significand - 1 : 4 * significand - 2;
+		long upper = 4 * significand + 2;
+		long center = 4 * significand;
+		long mask = (1L << shift) - 1;
+		long half = 1L << (shift - 1);
+		
+		for (int decimals = 0; decimals < POWERS_OF_TEN.length; decimals++) {
+			long power = POWERS_OF_TEN[decimals];
+			long lowerDigits = shiftRight(Math.multiplyHigh(lower, power), lower * power, shift);
+			if (((lower * power) & mask) != 0)
+				lowerDigits++;
+			long upperDigits = shiftRight(Math.multiplyHigh(upper, power), upper * power, shift);
+			if (lowerDigits > upperDigits)
+				continue;
+			
+			// nejbližší násobek, při shodě sudý
+			long digits = shiftRight(Math.multiplyHigh(center, power), center * power, shift);
+			long remainder = (center * power) & mask;
+			if (digits < lowerDigits)
+				digits = lowerDigits;
+			else if (digits < upperDigits && (remainder > half || remainder == half && (digits & 1) == 1))
+				digits++;
+			
+			if (decimals > DECIMALS) {
+				long dropped = POWERS_OF_TEN[decimals - DECIMALS];
+				boolean roundUp = (digits % dropped) >= dropped / 2;
+				digits = digits / dropped + (roundUp ? 1 : 0);
+				decimals = DECIMALS;
+			}
+			return writeFixed(digits, decimals, buffer, position);
+		}
+		
+		return -1;
+	}
+	
+	/**
+	 * Writes value below {@link #MIN_SHORTEST} rounded half up to
+	 * {@link #DECIMALS} decimal places. The exact value is rounded,
+	 * which gives the same result as rounding of its shortest digits,
+	 * unless the half of the last place is closer to the value than
+	 * the half of unit in the last place of the value.
+	 * @param bits     bits of positive value below {@link #MIN_SHORTEST}
+	 * @param buffer   buffer
+	 * @param position position of the first written byte
+	 * @return position after the last written byte, -1 if the value is too close to the half
+	 */
+	private static int formatSmall(long bits, byte[] buffer, int position) {
+		int biasedExponent = (int) (bits >>> 52);
+		long significand = bits & SIGNIFICAND_MASK;
+		int shift = 1074;
+		if (biasedExponent != 0) {
+			significand |= 1L << 52;
+			shift = 1075 - biasedExponent;
+		}
+		
+		// hodnota * 10^DECIMALS = (high, low) * 2^-shift
+		long scale = POWERS_OF_TEN[DECIMALS];
+		long high = Math.multiplyHigh(significand, scale);
+		long low = significand * scale;
+		if (shift >= 128)
+			return writeFixed(0, DECIMALS, buffer, position);
+		
+		long integer;
+		long fractionHigh;
+		long fractionLow;
+		if (shift >= 64) {
+			integer = high >>> (shift - 64);
+			fractionHigh = shift == 64 ? 0 : high & ((1L << (shift - 64)) - 1);
+			fractionLow = low;
+		} else {
+			integer = shiftRight(high, low, shift);
+			fractionHigh = 0;
+			fractionLow = low & ((1L << shift) - 1);
+		}
+		
+		// rozdíl 2 * zlomek - 1 v jednotkách 2^-shift, polovina ulp je v nich 10^DECIMALS / 2
+		long doubleHigh = (fractionHigh << 1) | (fractionLow >>> 63);
+		long doubleLow = fractionLow << 1;
+		long oneHigh = shift >= 64 ? 1L << (shift - 64) : 0;
+		long oneLow = shift >= 64 ? 0 : 1L << shift;
+		boolean roundUp = Long.compareUnsigned(doubleHigh, oneHigh) > 0
+				|| doubleHigh == oneHigh && Long.compareUnsigned(doubleLow, oneLow) >= 0;
+		long differenceHigh;
+		long differenceLow;
+		if (roundUp) {
+			differenceLow = doubleLow - oneLow;
+			differenceHigh = doubleHigh - oneHigh - (Long.compareUnsigned(doubleLow, oneLow) < 0 ? 1 : 0);
+		} else {
+			differenceLow = oneLow - doubleLow;
+			differenceHigh = oneHigh - doubleHigh - (Long.compareUnsigned(oneLow, doubleLow) < 0 ? 1 : 0);
+		}
+		if (differenceHigh == 0 && Long.compareUnsigned(differenceLow, scale) <= 0)
+			return -1;
+		
+		return writeFixed(integer + (roundUp ? 1 : 0), DECIMALS, buffer, position);
+	}
+	
+	/**
+	 * Writes decimal number given by its digits padded to {@link #DECIMALS} decimal places.
+	 * @param digits   all digits of the number as integer
+	 * @param decimals number of decimal places in the digits
+	 * @param buffer   buffer
+	 * @param position position of the first written byte
+	 * @return position after the last written byte
+	 */
+	private static int writeFixed(long digits, int decimals, byte[] buffer, int position) {
+		long power = POWERS_OF_TEN[decimals];
+		position = writeDigits(digits / power, 1, buffer, position);
+		buffer[position++] = '.';
+		if (decimals > 0)
+			position = writeDigits(digits % power, decimals, buffer, position);
+		for (int i = decimals; i < DECIMALS; i++)
+			buffer[position++] = '0';
+		
+		return position;
+	}
+	
+	/**
+	 * Writes nonnegative integer padded by zeros to given number of digits.
+	 * @param value    written integer
+	 * @param width    min. number of digits
+	 * @param buffer   buffer
+	 * @param position position of the first written byte
+	 * @return position after the last written byte
+	 */
+	public static int writeDigits(long value, int width, byte[] buffer, int position) {
+		int length = 1;
+		while (length < POWERS_OF_TEN.length && value >= POWERS_OF_TEN[length])
+			length++;
+		length = Math.max(length, width);
+		
+		for (int i = position + length - 1; i >= position; i--) {
+			buffer[i] = (byte) ('0' + value % 10);
+			value /= 10;
+		}
+		
+		return position + length;
+	}
+	
+	/**
+	 * Writes value formatted by {@code String.format}.
+	 * @param value    formatted value
+	 * @param buffer   buffer
+	 * @param position position of the first written byte
+	 * @return position after the last written byte
+	 */
+	private static int formatSlowly(double value, byte[] buffer, int position) {
+		byte[] text = String.format(Locale.ROOT, "%." + DECIMALS + "f", value).getBytes(StandardCharsets.ISO_8859_1);
+		System.arraycopy(text, 0, buffer, position, text.length);
+		return position + text.length;
+	}
+	
+	/**
+	 * Shifts unsigned 128-bit integer right, the result must fit in 64 bits.
+	 * @param high  upper 64 bits
+	 * @param low   lower 64 bits
+	 * @param shift shift between 1 and 63
+	 * @return lower 64 bits of the shifted integer
+	 */
+	private static long shiftRight(long high, long low, int shift) {
+		return (high << (64 - shift)) | (low >>> shift);
+	}
+}
@@ -0,0 +1,67 @@
+package cz.zcu.pperncka.io;
+
+import cz.zcu.pperncka.data.Network;
+
+/**
+ * Writer of flows and costs of arcs to a file by {@link Writer}, e.g. to
+ * watch the computation. Flows and costs are copied at the end of an
+ * iteration and written in the background while next iterations proceed,
+ * the copies are reused.
+ */
+public class FlowsWriter extends BackgroundWriter {
+	
+	/** Path to the file, may contain %d replaced by number of iterations. */
+	private final String file;
+	
+	/** Flows are written after every interval-th iteration. */
+	private final int interval;
+	
+	/** Format of the file. */
+	private final Writer.Format format;
+	
+	/** Copy of flows of arcs being written. */
+	private double[] flows = null;
+	
+	/** Copy of costs of arcs being written. */
+	private double[] costs = null;
+	
+	/**
+	 * Constructor.
+	 * @param file     path to the file, may contain %d replaced by number of iterations
+	 * @param interval flows are written after every interval-th iteration
+	 * @param format   format of the file
+	 */
+	public FlowsWriter(String file, int interval, Writer.Format format) {
+		super("Flows");
+		this.file = file;
+		this.interval = interval;
+		this.format = format;
+	}
+	
+	/**
+	 * Copies flows and costs of arcs after given number of completed
+	 * iterations and writes them in the background, if they are due.
+	 * @param network   network with current flows and costs
+	 * @param iteration number of completed iterations
+	 */
+	public void write(Network network, int iteration) {
+		if (iteration % interval != 0)
+			return;
+		
+		await();
+		Network.Arc[] arcs = network.getArcs();
+		if (flows == null || flows.length != arcs.length) {
+			flows = new double[arcs.length];
+			costs = new double[arcs.length];
+		}
+		for (int i = 0; i < arcs.length; i++) {
+			flows[i] = network.getFlow(i);
+			costs[i] = network.getCost(i);
+		}
+		
+		double[] flows = this.flows;
+		double[] costs = this.costs;
+		String file = this.file.replace("%d", Integer.toString(iteration));
+		submit(() -> Writer.writeFlows(arcs, flows, costs, file, format));
+	}
+}
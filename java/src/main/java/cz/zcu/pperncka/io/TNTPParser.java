@@ -1,16 +1,32 @@
 package cz.zcu.pperncka.io;
 
+import cz.zcu.pperncka.Utils;
 import cz.zcu.pperncka.data.Matrix;
 import cz.zcu.pperncka.data.Network;
+import cz.zcu.pperncka.data.SparseMatrix;
 
-import java.io.BufferedReader;
-import java.io.FileReader;
 import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.Vector;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
-/** Class with methods for parsing TNTP files. */
+/**
+ * Class with methods for parsing TNTP files. Files are scanned byte by
+ * byte by {@link ByteScanner}, numbers are parsed without creating
+ * strings. OD matrix can be parsed in parallel, the memory-mapped file
+ * is split into parts at {@code Origin} lines. Files ending with
+ * {@code .gz} are decompressed by {@link DecompressingChannel} on
+ * a separate thread while they are parsed.
+ */
 public class TNTPParser {
 	
 	private final static String COMMENT_SIGN = "~";
@@ -18,40 +34,58 @@ public class TNTPParser {
 	private final static String ZONES_NUMBER = "<NUMBER OF ZONES>";
 	private final static String NODES_NUMBER = "<NUMBER OF NODES>";
 	
+	/** Size of buffer for reading of files in bytes. */
+	private final static int BUFFER_SIZE = 1 << 16;
+	
+	/** Number of parts of OD matrix parsed by each thread. */
+	private final static int PARTS_PER_THREAD = 4;
+	
+	/** Number of buffers decompressed ahead of parsing of compressed files. */
+	private final static int DECOMPRESSED_BUFFERS = 16;
+	
+	/** Extension of gzip-compressed files. */
+	private final static String COMPRESSED_EXTENSION = ".gz";
+	
+	/** Word starting lines with origin of OD matrix. */
+	private final static String ORIGIN = "Origin";
+	
 	/**
 	 * Parses TNTP file representing road network.
-	 * @param path path to network TNTP file
+	 * @param path path to network TNTP file, optionally compressed by gzip
 	 * @return graph of road network
 	 */
+	@SuppressWarnings("unchecked")
 	public static Network parseNetwork(String path) {
-		try (var reader = new BufferedReader(new FileReader(path))) {
-			var header = parseHeader(reader);
+		try (ReadableByteChannel channel = open(path)) {
+			ByteScanner scanner = new ByteScanner(channel, BUFFER_SIZE);
+			var header = parseHeader(scanner);
 			
 			int nodes = Integer.parseInt(header.get(NODES_NUMBER));
 			int zones = Integer.parseInt(header.get(ZONES_NUMBER));
 			
-			Vector<Network.Arc>[] graph = new Vector[nodes];
+			List<Network.Arc>[] graph = new List[nodes];
 			for (int i = 0; i < graph.length; i++)
-				graph[i] = new Vector<>();
+				graph[i] = new ArrayList<>();
 			
-			String line;
-			while ((line = reader.readLine()) != null) {
-				line = removeComments(line);
-				if (line.isEmpty())
+			int c;
+			while ((c = scanner.skipWhitespaces()) != -1) {
+				if (c == COMMENT_SIGN.charAt(0)) {
+					scanner.skipLine();
 					continue;
+				}
 				
-				String[] split = line.split("[ \t]+");
-				
-				int fromNode = Integer.parseInt(split[0]) - 1;
-				int endNode = Integer.parseInt(split[1]) - 1;
-				double capacity = Double.parseDouble(split[2]);
-				double freeFlow = Double.parseDouble(split[4]);
+				int fromNode = scanner.nextInt() - 1;
+				int endNode = scanner.nextInt() - 1;
+				double capacity = scanner.nextDouble();
+				scanner.skipToken();
+				double freeFlow = scanner.nextDouble();
 				if (freeFlow == 0)
 					freeFlow = .0001;
 				Network.Arc arc = new Network.Arc(
 						fromNode, endNode, capacity, freeFlow);
 				
 				graph[fromNode].add(arc);
+				scanner.skipLine();
 			}
 			
 			return new Network(graph, zones);
@@ -62,56 +96,187 @@ public class TNTPParser {
 	
 	/**
 	 * Parses TNTP file representing OD matrix.
-	 * @param path path to matrix TNTP file
+	 * @param path path to matrix TNTP file, optionally compressed by gzip
 	 * @return OD matrix
 	 */
 	public static Matrix parseODMatrix(String path) {
-		try (var reader = new BufferedReader(new FileReader(path))) {
-			var header = parseHeader(reader);
+		return parseODMatrix(path, false);
+	}
+	
+	/**
+	 * Parses TNTP file representing OD matrix, optionally storing
+	 * only nonzero demand, which is suitable for models with many
+	 * zones, where most pairs of zones have no demand. The file is
+	 * parsed by all available processors.
+	 * @param path   path to matrix TNTP file, optionally compressed by gzip
+	 * @param sparse if true, {@link SparseMatrix} is returned
+	 * @return OD matrix
+	 */
+	public static Matrix parseODMatrix(String path, boolean sparse) {
+		return parseODMatrix(path, sparse, Runtime.getRuntime().availableProcessors());
+	}
+	
+	/**
+	 * Parses TNTP file representing OD matrix by given number of
+	 * threads. The file is split into parts starting with {@code Origin}
+	 * lines, which are parsed in parallel. The result is the same as of
+	 * sequential parsing, if each OD pair is given only once. Compressed
+	 * file is parsed sequentially while it is decompressed.
+	 * @param path    path to matrix TNTP file, optionally compressed by gzip
+	 * @param sparse  if true, {@link SparseMatrix} is returned
+	 * @param threads number of threads, at most 1 to parse sequentially
+	 * @return OD matrix
+	 */
+	public static Matrix parseODMatrix(String path, boolean sparse, int threads) {
+		try (ReadableByteChannel channel = open(path)) {
+			ByteScanner scanner = new ByteScanner(channel, BUFFER_SIZE);
+			var header = parseHeader(scanner);
 			
 			int zonesNumber = Integer.parseInt(header.get(ZONES_NUMBER));
-			Matrix odMatrix = new Matrix(zonesNumber);
+			Matrix odMatrix = sparse ? null : new Matrix(zonesNumber);
 			
-			int fromNode = 0;
-			String line;
-			while ((line = reader.readLine()) != null) {
-				line = removeComments(line);
-				if (line.isEmpty())
-					continue;
-				
-				if (line.contains("Origin"))
-					fromNode = Integer.parseInt(line.replace("Origin", "").trim()) - 1;
-				else {
+			if (threads <= 1 || isCompressed(path)) {
+				Elements elements = sparse ? new Elements(zonesNumber) : null;
+				parseOrigins(scanner, odMatrix, elements);
+				return sparse ? elements.toMatrix(zonesNumber) : odMatrix;
+			}
+			
+			FileChannel file = (FileChannel) channel;
+			long[] bounds = originBounds(file, scanner.position(), threads * PARTS_PER_THREAD);
+			Elements[] parts = new Elements[bounds.length - 1];
+			ExecutorService threadPool = Executors.newFixedThreadPool(threads);
+			try {
+				List<Future<Void>> futures = new ArrayList<>();
+				for (int i = 0; i < parts.length; i++) {
+					if (sparse)
+						parts[i] = new Elements(zonesNumber);
 					
-					String[] split = line.replaceAll("[ \t]", "").split(";");
-					for (String s : split) {
-						
-						String[] pair = s.split(":");
-						int toNode = Integer.parseInt(pair[0]) - 1;
-						double demand = Double.parseDouble(pair[1]);
-						odMatrix.set(fromNode, toNode, demand);
-					}
+					Elements elements = parts[i];
+					long start = bounds[i];
+					long end = bounds[i + 1];
+					futures.add(threadPool.submit(() -> {
+						MappedByteBuffer data = file.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+						parseOrigins(new ByteScanner(data, 0, data.limit()), odMatrix, elements);
+						return null;
+					}));
 				}
+				Utils.tryWaitAll(futures);
+			} finally {
+				threadPool.shutdown();
 			}
 			
-			return odMatrix;
+			return sparse ? Elements.concat(parts).toMatrix(zonesNumber) : odMatrix;
 		} catch (IOException e) {
 			throw new RuntimeException(e);
 		}
 	}
 	
+	/**
+	 * Returns if the file is compressed by gzip, i.e. if it ends with .gz.
+	 * @param path path to the file
+	 * @return true, if the file is compressed
+	 */
+	public static boolean isCompressed(String path) {
+		return path.endsWith(COMPRESSED_EXTENSION);
+	}
+	
+	/**
+	 * Opens channel of the file, which is decompressed on a separate
+	 * thread if it is compressed.
+	 * @param path path to the file
+	 * @return channel of the file, {@link FileChannel} if not compressed
+	 * @throws IOException if an I/O error occurs
+	 */
+	private static ReadableByteChannel open(String path) throws IOException {
+		if (isCompressed(path))
+			return new DecompressingChannel(Path.of(path), BUFFER_SIZE, DECOMPRESSED_BUFFERS);
+		
+		return FileChannel.open(Path.of(path));
+	}
+	
+	/**
+	 * Parses blocks of OD matrix, each starting with {@code Origin} line
+	 * followed by pairs of destination and trips separated by semicolons.
+	 * Pairs before the first {@code Origin} line belong to the first zone.
+	 * @param scanner  scanner of the blocks
+	 * @param odMatrix dense matrix to which trips are set, null if sparse
+	 * @param elements nonzero trips of sparse matrix, null if dense
+	 * @throws IOException if an I/O error occurs
+	 */
+	private static void parseOrigins(ByteScanner scanner, Matrix odMatrix, Elements elements) throws IOException {
+		int fromNode = 0;
+		int c;
+		while ((c = scanner.skipWhitespaces()) != -1) {
+			if (c == ';')
+				scanner.skip();
+			else if (c == COMMENT_SIGN.charAt(0))
+				scanner.skipLine();
+			else if (c == ORIGIN.charAt(0)) {
+				scanner.expect(ORIGIN);
+				fromNode = scanner.nextInt() - 1;
+			} else {
+				int toNode = scanner.nextInt() - 1;
+				scanner.expect(":");
+				double demand = scanner.nextDouble();
+				if (odMatrix != null)
+					odMatrix.set(fromNode, toNode, demand);
+				else if (demand != 0)
+					elements.add(fromNode, toNode, demand);
+			}
+		}
+	}
+	
+	/**
+	 * Splits data of OD matrix into parts at starts of {@code Origin}
+	 * lines, the parts have approximately same length. Parts may be
+	 * empty if blocks of origins are longer than parts.
+	 * @param channel channel of the file
+	 * @param start   offset of data after header
+	 * @param parts   number of parts
+	 * @return offsets of starts of parts and of the end of the file
+	 * @throws IOException if an I/O error occurs
+	 */
+	private static long[] originBounds(FileChannel channel, long start, int parts) throws IOException {
+		long size = channel.size();
+		long[] bounds = new long[parts + 1];
+		bounds[0] = start;
+		bounds[parts] = size;
+		
+		for (int i = 1; i < parts; i++) {
+			long from = Math.max(bounds[i - 1], start + (size - start) * i / parts);
+			int length = (int) Math.min(size - from, Integer.MAX_VALUE);
+			MappedByteBuffer data = channel.map(FileChannel.MapMode.READ_ONLY, from, length);
+			
+			// začátek prvního řádku Origin za odhadem
+			bounds[i] = size;
+			boolean lineStart = from == start;
+			for (int k = 0; k < length; k++) {
+				byte c = data.get(k);
+				if (lineStart && c == ORIGIN.charAt(0)) {
+					bounds[i] = from + k;
+					break;
+				}
+				if (c == '\n')
+					lineStart = true;
+				else if (c != ' ' && c != '\t')
+					lineStart = false;
+			}
+		}
+		
+		return bounds;
+	}
+	
 	/**
 	 * Parses header key-value pairs of TNTP file into a map.
-	 * @param reader BufferedReader of TNTP file with
-	 *               pointer at the start of the header
+	 * @param scanner scanner of TNTP file at the start of the header
 	 * @return map of parsed header key-value pairs
 	 * @throws IOException if an I/O error occurs
 	 */
-	private static Map<String, String> parseHeader(BufferedReader reader) throws IOException {
+	private static Map<String, String> parseHeader(ByteScanner scanner) throws IOException {
 		HashMap<String, String> header = new HashMap<>();
 		
 		String line;
-		while (!(line = reader.readLine().trim()).equals(HEADER_END)) {
+		while (!(line = scanner.nextLine().trim()).equals(HEADER_END)) {
 			line = removeComments(line);
 			if (line.isEmpty())
 				continue;
@@ -133,4 +298,79 @@ public class TNTPParser {
 	private static String removeComments(String line) {
 		return line.trim().split(COMMENT_SIGN)[0].trim();
 	}
+	
+	/** Growing arrays of nonzero elements of sparse matrix in order of parsing. */
+	private static class Elements {
+		
+		/** Rows of elements. */
+		private int[] rows;
+		
+		/** Columns of elements. */
+		private int[] columns;
+		
+		/** Values of elements. */
+		private double[] values;
+		
+		/** Number of elements. */
+		private int count = 0;
+		
+		/**
+		 * Creates empty arrays of elements.
+		 * @param capacity initial capacity
+		 */
+		private Elements(int capacity) {
+			rows = new int[capacity];
+			columns = new int[capacity];
+			values = new double[capacity];
+		}
+		
+		/**
+		 * Appends element.
+		 * @param row    row of the element
+		 * @param column column of the element
+		 * @param value  value of the element
+		 */
+		private void add(int row, int column, double value) {
+			if (count == rows.length) {
+				int capacity = Math.max(16, count + (count >> 1));
+				rows = Arrays.copyOf(rows, capacity);
+				columns = Arrays.copyOf(columns, capacity);
+				values = Arrays.copyOf(values, capacity);
+			}
+			rows[count] = row;
+			columns[count] = column;
+			values[count] = value;
+			count++;
+		}
+		
+		/**
+		 * Joins elements of parts in their order.
+		 * @param parts parsed parts
+		 * @return all elements
+		 */
+		private static Elements concat(Elements[] parts) {
+			int count = 0;
+			for (Elements part : parts)
+				count += part.count;
+			
+			Elements all = new Elements(count);
+			for (Elements part : parts) {
+				System.arraycopy(part.rows, 0, all.rows, all.count, part.count);
+				System.arraycopy(part.columns, 0, all.columns, all.count, part.count);
+				System.arraycopy(part.values, 0, all.values, all.count, part.count);
+				all.count += part.count;
+			}
+			
+			return all;
+		}
+		
+		/**
+		 * Creates sparse matrix from the elements.
+		 * @param n rank of matrix
+		 * @return sparse matrix
+		 */
+		private SparseMatrix toMatrix(int n) {
+			return SparseMatrix.fromElements(n, rows, columns, values, count);
+		}
+	}
 }
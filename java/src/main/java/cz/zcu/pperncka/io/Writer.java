@@ -2,32 +2,147 @@ package cz.zcu.pperncka.io;
 
 import cz.zcu.pperncka.data.Network;
 
-import java.io.BufferedWriter;
-import java.io.FileWriter;
 import java.io.IOException;
-import java.util.Locale;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.GZIPOutputStream;
 
-/** Class with method for writing flows. */
+/**
+ * Class with methods for writing flows. Lines of the text format are
+ * formatted into a reused byte buffer by {@link DoubleFormatter}, the
+ * text is same as with {@code String.format("%.15f")}. Files with
+ * {@code .gz} extension are compressed by gzip.
+ */
 public class Writer {
 	
+	/** Format of written flows. */
+	public enum Format {
+		/** TNTP flow file, i.e. lines with tab separated nodes, flow and cost of arcs. */
+		TEXT,
+		/** Little-endian doubles, flow and cost of each arc in order of arcs, without header. */
+		BINARY
+	}
+	
+	/** Size of buffer in bytes. */
+	private static final int BUFFER_SIZE = 1 << 16;
+	
+	/** Max. length of line of the text format in bytes. */
+	private static final int MAX_LINE = 2 * 11 + 2 * DoubleFormatter.MAX_LENGTH + 4;
+	
+	/** Header of the text format. */
+	private static final byte[] HEADER = "From\tTo\tVolume\tCost\n".getBytes();
+	
 	/**
-	 * Writes flows assigned to network arcs to a file.
+	 * Writes flows assigned to network arcs to a file in TNTP format.
 	 * @param arcs       array of arcs with assigned flows
 	 * @param outputFile path to a flow TNTP file which will be created
 	 */
 	public static void writeArcs(Network.Arc[] arcs, String outputFile) {
-		try (BufferedWriter bfw = new BufferedWriter(new FileWriter(outputFile))) {
+		writeArcs(arcs, outputFile, Format.TEXT);
+	}
+	
+	/**
+	 * Writes flows assigned to network arcs to a file.
+	 * @param arcs       array of arcs with assigned flows
+	 * @param outputFile path to a file which will be created, compressed if it ends with .gz
+	 * @param format     format of the file
+	 */
+	public static void writeArcs(Network.Arc[] arcs, String outputFile, Format format) {
+		double[] flows = new double[arcs.length];
+		double[] costs = new double[arcs.length];
+		for (int i = 0; i < arcs.length; i++) {
+			flows[i] = arcs[i].getCurrentFlow();
+			costs[i] = arcs[i].getCost();
+		}
+		
+		writeFlows(arcs, flows, costs, outputFile, format);
+	}
+	
+	/**
+	 * Writes given flows and costs of network arcs to a file, e.g.
+	 * copies taken while the computation continues.
+	 * @param arcs       array of arcs, only their nodes are written
+	 * @param flows      flows of the arcs
+	 * @param costs      costs of the arcs
+	 * @param outputFile path to a file which will be created, compressed if it ends with .gz
+	 * @param format     format of the file
+	 */
+	public static void writeFlows(Network.Arc[] arcs, double[] flows, double[] costs,
+								 String outputFile, Format format) {
+		try (OutputStream out = open(outputFile)) {
+			byte[] buffer = new byte[BUFFER_SIZE];
+			if (format == Format.BINARY)
+				writeBinary(flows, costs, buffer, out);
+			else
+				writeText(arcs, flows, costs, buffer, out);
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+	
+	/**
+	 * Writes lines of the text format through the buffer.
+	 * @param arcs   array of arcs
+	 * @param flows  flows of the arcs
+	 * @param costs  costs of the arcs
+	 * @param buffer buffer
+	 * @param out    output stream
+	 * @throws IOException if an I/O error occurs
+	 */
+	private static void writeText(Network.Arc[] arcs, double[] flows, double[] costs,
+								  byte[] buffer, OutputStream out) throws IOException {
+		System.arraycopy(HEADER, 0, buffer, 0, HEADER.length);
+		int position = HEADER.length;
+		for (int i = 0; i < arcs.length; i++) {
+			if (position > buffer.length - MAX_LINE) {
+				out.write(buffer, 0, position);
+				position = 0;
+			}
 			
-			bfw.write("From\tTo\tVolume\tCost\n");
-			for (Network.Arc arc : arcs) {
-				bfw.write((arc.startNode + 1) + "\t"
-						+ (arc.endNode + 1) + "\t"
-						+ String.format(Locale.ROOT, "%.15f", arc.getCurrentFlow()) + "\t"
-						+ String.format(Locale.ROOT, "%.15f", arc.getCost()) + "\n");
+			position = DoubleFormatter.writeDigits(arcs[i].startNode + 1, 1, buffer, position);
+			buffer[position++] = '\t';
+			position = DoubleFormatter.writeDigits(arcs[i].endNode + 1, 1, buffer, position);
+			buffer[position++] = '\t';
+			position = DoubleFormatter.format(flows[i], buffer, position);
+			buffer[position++] = '\t';
+			position = DoubleFormatter.format(costs[i], buffer, position);
+			buffer[position++] = '\n';
+		}
+		out.write(buffer, 0, position);
+	}
+	
+	/**
+	 * Writes flow and cost of each arc as little-endian doubles through the buffer.
+	 * @param flows  flows of the arcs
+	 * @param costs  costs of the arcs
+	 * @param buffer buffer
+	 * @param out    output stream
+	 * @throws IOException if an I/O error occurs
+	 */
+	private static void writeBinary(double[] flows, double[] costs, byte[] buffer, OutputStream out) throws IOException {
+		ByteBuffer doubles = ByteBuffer.wrap(buffer).order(ByteOrder.LITTLE_ENDIAN);
+		for (int i = 0; i < flows.length; i++) {
+			if (doubles.remaining() < 2 * Double.BYTES) {
+				out.write(buffer, 0, doubles.position());
+				doubles.clear();
 			}
 			
-		} catch (IOException e) {
-			throw new RuntimeException(e);
+			doubles.putDouble(flows[i]).putDouble(costs[i]);
 		}
+		out.write(buffer, 0, doubles.position());
+	}
+	
+	/**
+	 * Opens output stream of the file, compressed by gzip if the file ends with .gz.
+	 * @param outputFile path to the file
+	 * @return output stream
+	 * @throws IOException if an I/O error occurs
+	 */
+	private static OutputStream open(String outputFile) throws IOException {
+		OutputStream out = Files.newOutputStream(Path.of(outputFile));
+		return outputFile.endsWith(".gz") ? new GZIPOutputStream(out, BUFFER_SIZE) : out;
 	}
 }
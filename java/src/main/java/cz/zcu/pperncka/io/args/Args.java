@@ -1,6 +1,8 @@
 package cz.zcu.pperncka.io.args;
 
 import com.beust.jcommander.Parameter;
+import cz.zcu.pperncka.data.PriorityQueue;
+import cz.zcu.pperncka.io.Writer;
 
 /** Class with atributes representing parsed command line arguments. */
 public class Args {
@@ -9,22 +11,47 @@ public class Args {
 			required = true,
 			validateWith = FileExistsValidator.class,
 			description = "Specifies a path to a .tntp file " +
-					"containing the network.")
+					"(or .tntp.gz compressed by gzip) " +
+					"containing the network, or to a binary file " +
+					"converted by BinaryFormat.")
 	public String networkFile;
 	
 	@Parameter(names = {"-odm", "--odmatrix"},
 			required = true,
 			validateWith = FileExistsValidator.class,
 			description = "Specifies a path to a .tntp file " +
-					"containing the origin-destination matrix.")
+					"(or .tntp.gz compressed by gzip) " +
+					"containing the origin-destination matrix, or to " +
+					"a binary file converted by BinaryFormat.")
 	public String matrixFile;
 	
 	@Parameter(names = {"-o", "--output"},
 			required = true,
 			description = "Specifies a path to a file to which the " +
-					"resulting trips/flow of each arc will be written.")
+					"resulting trips/flow of each arc will be written. " +
+					"The file is compressed by gzip if it ends with .gz.")
 	public String outputFile;
 	
+	@Parameter(names = {"-of", "--output-format"},
+			description = "Specifies the format of -o and -fo files. " +
+					"One of TEXT (TNTP flow file) or BINARY (flow and " +
+					"cost of each arc as little-endian doubles).")
+	public Writer.Format outputFormat = Writer.Format.TEXT;
+	
+	@Parameter(names = {"-fo", "--flows-output"},
+			description = "Specifies a path to a file to which flows " +
+					"of arcs will be written periodically (see -fi), " +
+					"%d in the path is replaced by the number of " +
+					"iterations. The file is written in the background " +
+					"while next iterations proceed.")
+	public String flowsFile;
+	
+	@Parameter(names = {"-fi", "--flows-interval"},
+			validateWith = PositiveIntValidator.class,
+			description = "With -fo, flows will be written after " +
+					"every n-th iteration.")
+	public int flowsInterval = 1;
+	
 	@Parameter(names = {"-i", "--iterations"},
 			required = true,
 			validateWith = PositiveIntValidator.class,
@@ -41,16 +68,146 @@ public class Args {
 					"computationally demanding.")
 	public double relativeGap;
 	
+	@Parameter(names = {"-gi", "--gap-interval"},
+			validateWith = PositiveIntValidator.class,
+			description = "When specified together with -rg, the exact " +
+					"relative gap will be computed only in every n-th " +
+					"iteration. The computation stops only after an exact " +
+					"relative gap, in other iterations the relative gap " +
+					"computed from bushes is only reported.")
+	public int gapInterval = 1;
+	
+	@Parameter(names = {"-ag", "--async-gap"},
+			description = "When present together with -rg, the exact " +
+					"relative gap will be computed in the background from " +
+					"a copy of flows while next iterations proceed. The " +
+					"algorithm ends according to the most recently " +
+					"computed relative gap.")
+	public boolean asyncGap;
+	
+	@Parameter(names = {"-rs", "--reverse-sweep"},
+			description = "When present, flows of each bush will be " +
+					"shifted node by node in reverse topological order " +
+					"of the bush and costs of arcs will be updated right " +
+					"after each shift.")
+	public boolean reverseSweep;
+	
+	@Parameter(names = {"-ii", "--inner-iterations"},
+			validateWith = PositiveIntValidator.class,
+			description = "Specifies max. number of passes of shifting " +
+					"flows on each bush in one iteration. Before each next " +
+					"pass, costs are updated and trees of the bush are found " +
+					"again. With -t, it requires -cs or -ws.")
+	public int innerIterations = 1;
+	
+	@Parameter(names = {"-itol", "--inner-tolerance"},
+			description = "With -ii, passes on a bush end when its excess " +
+					"cost relative to cost of its flow is at most this number.")
+	public double innerTolerance = 0;
+	
+	@Parameter(names = {"-as", "--adaptive-scheduling"},
+			description = "When present, all bushes will be processed " +
+					"only in every n-th iteration (see -fp). In other " +
+					"iterations, bushes with low excess cost will be " +
+					"skipped.")
+	public boolean adaptiveScheduling;
+	
+	@Parameter(names = {"-fp", "--full-pass-interval"},
+			validateWith = PositiveIntValidator.class,
+			description = "Specifies how often all bushes are processed " +
+					"with -as.")
+	public int fullPassInterval = 5;
+	
+	@Parameter(names = {"-sf", "--skip-factor"},
+			description = "With -as, bush is skipped if its excess cost " +
+					"relative to cost of its flow is lower than this " +
+					"factor times relative gap of bushes.")
+	public double skipFactor = 0.1;
+	
+	@Parameter(names = {"-cp", "--checkpoint"},
+			description = "Specifies a path to a binary file to which " +
+					"flows of arcs and all bushes will be written " +
+					"periodically (see -ci), so that the computation " +
+					"can be resumed by -r. The file is written in the " +
+					"background while next iterations proceed.")
+	public String checkpointFile;
+	
+	@Parameter(names = {"-ci", "--checkpoint-interval"},
+			validateWith = PositiveIntValidator.class,
+			description = "With -cp, the checkpoint will be written " +
+					"after every n-th iteration.")
+	public int checkpointInterval = 10;
+	
+	@Parameter(names = {"-r", "--resume"},
+			validateWith = FileExistsValidator.class,
+			description = "Specifies a path to a checkpoint file written " +
+					"by -cp for the same network. The computation will " +
+					"continue from the checkpoint, iterations made before " +
+					"it count towards max. iterations.")
+	public String resumeFile;
+	
 	@Parameter(names = {"-t", "--threads"},
 			validateWith = PositiveIntValidator.class,
 			description = "When present, the parallelized version of " +
 					"the algorithm will be executed. The number specifies " +
-					"how many worker threads will be used. Note: launching " +
+					"how many worker threads will be used, the OD matrix is " +
+					"also parsed by this number of threads, otherwise " +
+					"sequentially. Note: launching " +
 					"with -t 1 is not desirable since the program will take " +
 					"longer than when launched without -t at all because " +
 					"of additional overhead of the parallelized version.")
 	public int threads;
 	
+	@Parameter(names = {"-cs", "--concurrent-shifting"},
+			description = "When present together with -t, the worker " +
+					"threads will also shift flows of their bushes " +
+					"concurrently instead of the main thread shifting " +
+					"them sequentially. Results are then not deterministic. " +
+					"Cannot be used together with -pl.")
+	public boolean concurrentShifting;
+	
+	@Parameter(names = {"-ws", "--work-stealing"},
+			description = "When present together with -t, all bushes " +
+					"of an iteration will be processed by a work stealing " +
+					"pool, the slowest bushes first, without waiting for " +
+					"each other in batches. Flows are shifted concurrently, " +
+					"so results are not deterministic. Cannot be used " +
+					"together with -pl.")
+	public boolean workStealing;
+	
+	@Parameter(names = {"-pl", "--pipelined"},
+			description = "When present together with -t, worker threads " +
+					"will prepare trees of the next batch of bushes while " +
+					"the main thread shifts flows of the current batch. " +
+					"Cannot be used together with -cs or -ws.")
+	public boolean pipelined;
+	
+	@Parameter(names = {"-plt", "--pipeline-tolerance"},
+			description = "Specifies max. relative change of cost of any " +
+					"arc, for which trees prepared by -pl are still used. " +
+					"If costs change more, trees are found again.")
+	public double pipelineTolerance = 0.01;
+	
+	@Parameter(names = {"-sb", "--sparse-bushes"},
+			description = "When present, each bush will store only its " +
+					"own arcs instead of an entry for every arc of the " +
+					"network. This lowers memory consumption on large " +
+					"networks, but the algorithm is slower.")
+	public boolean sparseBushes;
+	
+	@Parameter(names = {"-so", "--sparse-odmatrix"},
+			description = "When present, the OD matrix will store only " +
+					"nonzero trips instead of an entry for every pair of " +
+					"zones. This lowers memory consumption on networks " +
+					"with many zones and sparse demand.")
+	public boolean sparseMatrix;
+	
+	@Parameter(names = {"-pq", "--priority-queue"},
+			description = "Specifies the priority queue used for " +
+					"searching the shortest paths. One of BINARY, " +
+					"QUATERNARY (4-ary heap) or RADIX (radix heap).")
+	public PriorityQueue.Type priorityQueue = PriorityQueue.Type.QUATERNARY;
+	
 	@Parameter(names = {"-h", "--help"},
 			help = true,
 			description = "Prints out this help.")
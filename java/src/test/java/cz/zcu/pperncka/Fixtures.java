@@ -0,0 +1,129 @@
+package cz.zcu.pperncka;
+
+import cz.zcu.pperncka.data.Matrix;
+import cz.zcu.pperncka.data.Network;
+import cz.zcu.pperncka.data.Network.Arc;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/** Class with small networks and OD matrices shared by tests. */
+@SuppressWarnings("unchecked")
+public class Fixtures {
+	
+	/**
+	 * Creates grid network without flows, first 4 nodes are zones.
+	 * @param size number of nodes in each row and column
+	 * @return network
+	 */
+	public static Network grid(int size) {
+		List<Arc>[] adjList = new List[size * size];
+		for (int i = 0; i < adjList.length; i++)
+			adjList[i] = new ArrayList<>();
+		
+		for (int y = 0; y < size; y++)
+			for (int x = 0; x < size; x++) {
+				int node = y * size + x;
+				if (x + 1 < size) {
+					adjList[node].add(new Arc(node, node + 1, 30, 1 + x));
+					adjList[node + 1].add(new Arc(node + 1, node, 30.5, 2 + y));
+				}
+				if (y + 1 < size) {
+					adjList[node].add(new Arc(node, node + size, 25, 1.25 + y));
+					adjList[node + size].add(new Arc(node + size, node, 30, 3 + x));
+				}
+			}
+		
+		return new Network(adjList, 4);
+	}
+	
+	/**
+	 * Creates OD matrix of zones of {@link #grid(int)}, zone 2 is only a destination.
+	 * @return OD matrix
+	 */
+	public static Matrix gridMatrix() {
+		Matrix odm = new Matrix(4);
+		for (int i = 0; i < 4; i++)
+			for (int j = 0; j < 4; j++)
+				if (i != j && i != 2)
+					odm.set(i, j, 10.5 * (i + 1) + j);
+		return odm;
+	}
+	
+	/**
+	 * Creates network of 4 zones with a diagonal, without flows.
+	 * @return network
+	 */
+	public static Network square() {
+		//  2---3
+		//  | / |
+		//  0---1
+		var adjList = new List[]{
+				List.of(new Arc(0, 1, 100, 1), new Arc(0, 2, 100, 1), new Arc(0, 3, 100, 3)),
+				List.of(new Arc(1, 0, 100, 1), new Arc(1, 3, 100, 1)),
+				List.of(new Arc(2, 0, 100, 1), new Arc(2, 3, 100, 1)),
+				List.of(new Arc(3, 0, 100, 3), new Arc(3, 1, 100, 1), new Arc(3, 2, 100, 1))
+		};
+		return new Network(adjList, 4);
+	}
+	
+	/**
+	 * Creates OD matrix of zones of {@link #square()}.
+	 * @return OD matrix
+	 */
+	public static Matrix squareMatrix() {
+		Matrix m = new Matrix(4);
+		m.set(0, 1, 100);
+		m.set(0, 3, 150);
+		m.set(2, 1, 80);
+		m.set(3, 0, 60);
+		return m;
+	}
+	
+	/**
+	 * Creates network of given arcs without zones, arcs starting in
+	 * the same node keep their order. Nodes are numbered up to the
+	 * highest node of the arcs.
+	 * @param arcs arcs of the network
+	 * @return network
+	 */
+	public static Network network(Arc... arcs) {
+		int nodes = 0;
+		for (Arc arc : arcs)
+			nodes = Math.max(nodes, Math.max(arc.startNode, arc.endNode) + 1);
+		
+		List<Arc>[] adjList = new List[nodes];
+		for (int i = 0; i < nodes; i++)
+			adjList[i] = new ArrayList<>();
+		for (Arc arc : arcs)
+			adjList[arc.startNode].add(arc);
+		
+		return new Network(adjList, 0);
+	}
+	
+	/**
+	 * Creates tree of paths from arcs to each node.
+	 * @param network network containing the arcs
+	 * @param arcs    arc to each node, null for none
+	 * @return index of arc of the network with same nodes for each node, -1 for none
+	 */
+	public static int[] tree(Network network, Arc... arcs) {
+		int[] tree = new int[arcs.length];
+		for (int node = 0; node < arcs.length; node++)
+			tree[node] = arcs[node] == null ? -1 : indexOf(network, arcs[node]);
+		return tree;
+	}
+	
+	/**
+	 * Returns index of arc of the network with same nodes as given arc.
+	 * @param network network containing the arc
+	 * @param arc     arc
+	 * @return index of the arc in the network
+	 */
+	public static int indexOf(Network network, Arc arc) {
+		for (int i = network.firstArcOf(arc.startNode); i < network.lastArcOf(arc.startNode); i++)
+			if (network.getEndNode(i) == arc.endNode)
+				return i;
+		throw new IllegalArgumentException("Arc " + arc + " is not in the network.");
+	}
+}
@@ -3,6 +3,7 @@ package cz.zcu.pperncka.algorithm;
 import cz.zcu.pperncka.data.Bush;
 import cz.zcu.pperncka.data.Matrix;
 import cz.zcu.pperncka.data.Network;
+import cz.zcu.pperncka.data.Workspace;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
@@ -51,7 +52,7 @@ public class CreateBushTest {
 		
 		Algorithm a = new Algorithm(network, m, 0, 0);
 		
-		Bush bush = a.createBush(0);
+		Bush bush = a.createBush(0, new Workspace(network.nodes));
 		
 		assertTrue(bush.arcExists(0));
 		assertTrue(bush.arcExists(1));
@@ -80,7 +81,7 @@ public class CreateBushTest {
 		
 		Algorithm a = new Algorithm(network, m, 0, 0);
 		
-		Bush bush = a.createBush(1);
+		Bush bush = a.createBush(1, new Workspace(network.nodes));
 		
 		assertTrue(bush.arcExists(3));
 		assertTrue(bush.arcExists(4));
@@ -0,0 +1,90 @@
+package cz.zcu.pperncka.algorithm;
+
+import cz.zcu.pperncka.data.Bush;
+import cz.zcu.pperncka.data.Matrix;
+import cz.zcu.pperncka.data.Network;
+import cz.zcu.pperncka.data.Network.Arc;
+import cz.zcu.pperncka.data.Workspace;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SuppressWarnings("unchecked")
+@DisplayName("divergenceNodes")
+public class DivergenceNodesTest {
+	
+	@DisplayName("Same as LCA of each node on grid")
+	@Test
+	void test1() {
+		// zóny jsou v rozích mřížky, ostatní uzly jsou číslovány po řádcích
+		int size = 8;
+		int zones = 4;
+		int[] corners = {0, size - 1, size * (size - 1), size * size - 1};
+		int[] id = new int[size * size];
+		for (int position = 0, next = zones; position < id.length; position++)
+			id[position] = next++;
+		for (int zone = 0; zone < zones; zone++) {
+			for (int position = 0; position < id.length; position++)
+				if (id[position] > id[corners[zone]])
+					id[position]--;
+			id[corners[zone]] = zone;
+		}
+		
+		List<Arc>[] adjList = new List[size * size];
+		for (int i = 0; i < adjList.length; i++)
+			adjList[i] = new ArrayList<>();
+		
+		for (int y = 0; y < size; y++)
+			for (int x = 0; x < size; x++) {
+				int node = id[y * size + x];
+				if (x + 1 < size) {
+					int right = id[y * size + x + 1];
+					adjList[node].add(new Arc(node, right, 20, 1 + x % 3, 0, 0));
+					adjList[right].add(new Arc(right, node, 20, 1 + y % 2, 0, 0));
+				}
+				if (y + 1 < size) {
+					int down = id[(y + 1) * size + x];
+					adjList[node].add(new Arc(node, down, 20, 1 + y % 3, 0, 0));
+					adjList[down].add(new Arc(down, node, 20, 1 + x % 2, 0, 0));
+				}
+			}
+		
+		Network network = new Network(adjList, zones);
+		Matrix odm = new Matrix(zones);
+		for (int i = 0; i < zones; i++)
+			for (int j = 0; j < zones; j++)
+				if (i != j)
+					odm.set(i, j, 50);
+		network.updateCosts();
+		
+		Algorithm a = new Algorithm(network, odm, 0, 0);
+		Bush[] bushes = new Bush[zones];
+		Workspace workspace = new Workspace(network.nodes);
+		for (int root = 0; root < zones; root++) {
+			bushes[root] = a.createBush(root, workspace);
+			for (int i = 0; i < bushes[root].size(); i++)
+				network.getArcs()[bushes[root].getArc(i)].addFlow(bushes[root].getFlow(i));
+		}
+		network.updateCosts();
+		
+		int found = 0;
+		for (Bush bush : bushes) {
+			a.improveBush(bush, workspace);
+			a.getTrees(bush, workspace);
+			a.divergenceNodes(bush, workspace);
+			
+			for (int node = 0; node < network.nodes; node++) {
+				int lca = a.LCA(workspace.minTree, workspace.maxTree, node, workspace);
+				assertEquals(lca, workspace.nodeResults[node], "node " + node);
+				if (lca != -1)
+					found++;
+			}
+		}
+		
+		assertTrue(found > 0);
+	}
+}
@@ -3,26 +3,19 @@ package cz.zcu.pperncka.algorithm;
 import cz.zcu.pperncka.data.Bush;
 import cz.zcu.pperncka.data.Network;
 import cz.zcu.pperncka.data.Network.Arc;
-import org.junit.jupiter.api.BeforeAll;
+import cz.zcu.pperncka.data.Workspace;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 
-import java.util.List;
-
+import static cz.zcu.pperncka.Fixtures.indexOf;
+import static cz.zcu.pperncka.Fixtures.network;
+import static cz.zcu.pperncka.Fixtures.tree;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
-@SuppressWarnings("unchecked")
 @DisplayName("findFlowDelta")
 public class FindFlowDeltaTest {
 	
-	static Algorithm a;
-	
-	@BeforeAll
-	static void beforeAll() {
-		Network n = new Network(new List[0], 0);
-		a = new Algorithm(n, null, 0, 0);
-	}
-	
 	@DisplayName("Case from Wikipedia - diamond")
 	@Test
 	void test1() {
@@ -31,13 +24,18 @@ public class FindFlowDeltaTest {
 		var arc13 = new Arc(1, 3, 1000, 15, 8000, 0);
 		var arc23 = new Arc(2, 3, 3000, 20,    0, 0);
 		
-		var minTree = new Arc[]{null, arc01, arc02, arc23};
-		var maxTree = new Arc[]{null, arc01, arc02, arc13};
+		Network network = network(arc01, arc02, arc13, arc23);
+		Algorithm a = new Algorithm(network, null, 0, 0);
+		Workspace workspace = new Workspace(network.nodes);
 		
-		Bush bush = new Bush(1, 0);
-		bush.addFlow(0, 10000);
+		var minTree = tree(network, null, arc01, arc02, arc23);
+		var maxTree = tree(network, null, arc01, arc02, arc13);
 		
-		assertEquals(5847, Math.round(a.findFlowDelta(minTree, maxTree, bush, 3, 0)));
+		Bush bush = new Bush(network.getArcs().length, 0);
+		bush.addFlow(indexOf(network, arc01), 10000);
+		bush.addFlow(indexOf(network, arc13), 10000);
+		
+		assertEquals(5847, Math.round(a.findFlowDelta(minTree, maxTree, bush, 3, 0, workspace)));
 	}
 	
 	@DisplayName("Case from Wikipedia - diamond with tail")
@@ -49,13 +47,18 @@ public class FindFlowDeltaTest {
 		var arc24 = new Arc(2, 4, 1000, 15, 8000, 0);
 		var arc34 = new Arc(3, 4, 3000, 20,    0, 0);
 		
-		var minTree = new Arc[]{null, arc01, arc12, arc13, arc34};
-		var maxTree = new Arc[]{null, arc01, arc12, arc13, arc24};
+		Network network = network(arc01, arc12, arc13, arc24, arc34);
+		Algorithm a = new Algorithm(network, null, 0, 0);
+		Workspace workspace = new Workspace(network.nodes);
+		
+		var minTree = tree(network, null, arc01, arc12, arc13, arc34);
+		var maxTree = tree(network, null, arc01, arc12, arc13, arc24);
 		
-		Bush bush = new Bush(1, 0);
-		bush.addFlow(0, 10000);
+		Bush bush = new Bush(network.getArcs().length, 0);
+		bush.addFlow(indexOf(network, arc12), 10000);
+		bush.addFlow(indexOf(network, arc24), 10000);
 		
-		assertEquals(5847, Math.round(a.findFlowDelta(minTree, maxTree, bush, 4, 1)));
+		assertEquals(5847, Math.round(a.findFlowDelta(minTree, maxTree, bush, 4, 1, workspace)));
 	}
 	
 	@DisplayName("Test maxDeltaX <= μ")
@@ -66,13 +69,18 @@ public class FindFlowDeltaTest {
 		var arc13 = new Arc(1, 3, 1000, 15, 8000, 0);
 		var arc23 = new Arc(2, 3, 3000, 20,    0, 0);
 		
-		var minTree = new Arc[]{null, arc01, arc02, arc23};
-		var maxTree = new Arc[]{null, arc01, arc02, arc13};
+		Network network = network(arc01, arc02, arc13, arc23);
+		Algorithm a = new Algorithm(network, null, 0, 0);
+		Workspace workspace = new Workspace(network.nodes);
 		
-		Bush bush = new Bush(1, 0);
-		bush.addFlow(0, 1000);
+		var minTree = tree(network, null, arc01, arc02, arc23);
+		var maxTree = tree(network, null, arc01, arc02, arc13);
 		
-		assertEquals(1000, a.findFlowDelta(minTree, maxTree, bush, 3, 0));
+		Bush bush = new Bush(network.getArcs().length, 0);
+		bush.addFlow(indexOf(network, arc01), 1000);
+		bush.addFlow(indexOf(network, arc13), 1000);
+		
+		assertEquals(1000, a.findFlowDelta(minTree, maxTree, bush, 3, 0, workspace));
 	}
 	
 	@DisplayName("Nonconverging case")
@@ -84,13 +92,19 @@ public class FindFlowDeltaTest {
 		var arc04 = new Arc(0, 4, 		10000, 5, 2300, 0);
 		var arc43 = new Arc(4, 3, 13915.78842, 3, 1900, 0);
 		
-		var minTree = new Arc[]{null, arc01, arc12, arc23, arc04};
-		var maxTree = new Arc[]{null, arc01, arc12, arc43, arc04};
+		Network network = network(arc01, arc12, arc23, arc04, arc43);
+		Algorithm a = new Algorithm(network, null, 0, 0);
+		Workspace workspace = new Workspace(network.nodes);
+		
+		var minTree = tree(network, null, arc01, arc12, arc23, arc04);
+		var maxTree = tree(network, null, arc01, arc12, arc43, arc04);
 		
-		Bush bush = new Bush(1, 0);
-		bush.addFlow(0, 700);
+		Bush bush = new Bush(network.getArcs().length, 0);
+		bush.addFlow(indexOf(network, arc04), 700);
+		bush.addFlow(indexOf(network, arc43), 700);
 		
-		assertEquals(700, a.findFlowDelta(minTree, maxTree, bush, 3, 0));
+		// max. segment je levnější, nechráněná Newtonova metoda zde divergovala
+		assertEquals(0, a.findFlowDelta(minTree, maxTree, bush, 3, 0, workspace));
 	}
 	
 	@DisplayName("maxDeltaX == 0")
@@ -101,11 +115,37 @@ public class FindFlowDeltaTest {
 		var arc13 = new Arc(1, 3, 1000, 15, 8000, 0);
 		var arc23 = new Arc(2, 3, 3000, 20,    0, 0);
 		
-		var minTree = new Arc[]{null, arc01, arc02, arc23};
-		var maxTree = new Arc[]{null, arc01, arc02, arc13};
+		Network network = network(arc01, arc02, arc13, arc23);
+		Algorithm a = new Algorithm(network, null, 0, 0);
+		Workspace workspace = new Workspace(network.nodes);
+		
+		var minTree = tree(network, null, arc01, arc02, arc23);
+		var maxTree = tree(network, null, arc01, arc02, arc13);
+		
+		Bush bush = new Bush(network.getArcs().length, 0);
+		
+		assertEquals(0, a.findFlowDelta(minTree, maxTree, bush, 3, 0, workspace));
+	}
+	
+	@DisplayName("Segments in equilibrium after shift")
+	@Test
+	void test6() {
+		var arc01 = new Arc(0, 1, 100, 1, 400, 0);
+		var arc02 = new Arc(0, 2, 100, 1,   0, 0);
+		var arc21 = new Arc(2, 1, 100, 1,   0, 0);
+		
+		Network network = network(arc01, arc02, arc21);
+		Algorithm a = new Algorithm(network, null, 0, 0);
+		Workspace workspace = new Workspace(network.nodes);
+		
+		var minTree = tree(network, null, arc21, arc02);
+		var maxTree = tree(network, null, arc01, null);
 		
-		Bush bush = new Bush(1, 0);
+		Bush bush = new Bush(network.getArcs().length, 0);
+		bush.addFlow(indexOf(network, arc01), 400);
 		
-		assertEquals(0, a.findFlowDelta(minTree, maxTree, bush, 3, 0));
+		double deltaX = a.findFlowDelta(minTree, maxTree, bush, 1, 0, workspace);
+		assertTrue(deltaX > 0 && deltaX < 400);
+		assertEquals(arc01.BPR(-deltaX), arc02.BPR(deltaX) + arc21.BPR(deltaX), 1e-6);
 	}
 }
@@ -2,6 +2,7 @@ package cz.zcu.pperncka.algorithm;
 
 import cz.zcu.pperncka.data.Bush;
 import cz.zcu.pperncka.data.Network;
+import cz.zcu.pperncka.data.Workspace;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 
@@ -32,7 +33,7 @@ public class GetMaxDistanceTest {
 		
 		Algorithm a = new Algorithm(network, null, 0, 0);
 		
-		var res = a.getMaxDistance(bush);
+		var res = a.getMaxDistance(bush, new Workspace(network.nodes));
 		
 		assertArrayEquals(new double[]{0, 1, 2, 3}, res);
 	}
@@ -54,7 +55,7 @@ public class GetMaxDistanceTest {
 		
 		Algorithm a = new Algorithm(network, null, 0, 0);
 		
-		var res = a.getMaxDistance(bush);
+		var res = a.getMaxDistance(bush, new Workspace(network.nodes));
 		
 		assertArrayEquals(new double[]{0, 1.15, 2.3, 3.45}, res, EPSILON);
 	}
@@ -76,7 +77,7 @@ public class GetMaxDistanceTest {
 		
 		Algorithm a = new Algorithm(network, null, 0, 0);
 		
-		var res = a.getMaxDistance(bush);
+		var res = a.getMaxDistance(bush, new Workspace(network.nodes));
 		
 		assertArrayEquals(new double[]{0, 1, 2}, res);
 	}
@@ -100,7 +101,7 @@ public class GetMaxDistanceTest {
 		
 		Algorithm a = new Algorithm(network, null, 0, 0);
 		
-		var res = a.getMaxDistance(bush);
+		var res = a.getMaxDistance(bush, new Workspace(network.nodes));
 		
 		assertArrayEquals(new double[]{0, 1, 2, 3, 4}, res);
 	}
@@ -3,11 +3,13 @@ package cz.zcu.pperncka.algorithm;
 import cz.zcu.pperncka.data.Bush;
 import cz.zcu.pperncka.data.Network;
 import cz.zcu.pperncka.data.Network.Arc;
+import cz.zcu.pperncka.data.Workspace;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 
 import java.util.List;
 
+import static cz.zcu.pperncka.Fixtures.tree;
 import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 
 @SuppressWarnings("unchecked")
@@ -33,10 +35,11 @@ public class GetTreesTest {
 		
 		Algorithm a = new Algorithm(network, null, 0, 0);
 		
-		var res = a.getTrees(bush);
+		Workspace workspace = new Workspace(network.nodes);
+		a.getTrees(bush, workspace);
 		
-		assertArrayEquals(new Arc[]{null, arc01, arc12, arc23}, res.first());
-		assertArrayEquals(new Arc[]{null, arc01, arc12, arc23}, res.second());
+		assertArrayEquals(tree(network, null, arc01, arc12, arc23), workspace.minTree);
+		assertArrayEquals(tree(network, null, arc01, arc12, arc23), workspace.maxTree);
 	}
 	
 	@DisplayName("Path P4 with non-active arc")
@@ -59,9 +62,10 @@ public class GetTreesTest {
 		
 		Algorithm a = new Algorithm(network, null, 0, 0);
 		
-		var res = a.getTrees(bush);
-		assertArrayEquals(new Arc[]{null, arc01, arc12, arc23}, res.first());
-		assertArrayEquals(new Arc[]{null, arc01, null, null}, res.second());
+		Workspace workspace = new Workspace(network.nodes);
+		a.getTrees(bush, workspace);
+		assertArrayEquals(tree(network, null, arc01, arc12, arc23), workspace.minTree);
+		assertArrayEquals(tree(network, null, arc01, null, null), workspace.maxTree);
 	}
 	
 	@DisplayName("Cyclic graph C3")
@@ -83,10 +87,11 @@ public class GetTreesTest {
 		
 		Algorithm a = new Algorithm(network, null, 0, 0);
 		
-		var res = a.getTrees(bush);
+		Workspace workspace = new Workspace(network.nodes);
+		a.getTrees(bush, workspace);
 		
-		assertArrayEquals(new Arc[]{null, arc01, arc02}, res.first());
-		assertArrayEquals(new Arc[]{null, arc01, arc12}, res.second());
+		assertArrayEquals(tree(network, null, arc01, arc02), workspace.minTree);
+		assertArrayEquals(tree(network, null, arc01, arc12), workspace.maxTree);
 	}
 	
 	@DisplayName("Cyclic graph C3 (2)")
@@ -108,10 +113,11 @@ public class GetTreesTest {
 		
 		Algorithm a = new Algorithm(network, null, 0, 0);
 		
-		var res = a.getTrees(bush);
+		Workspace workspace = new Workspace(network.nodes);
+		a.getTrees(bush, workspace);
 		
-		assertArrayEquals(new Arc[]{null, arc01, arc12}, res.first());
-		assertArrayEquals(new Arc[]{null, arc01, arc02}, res.second());
+		assertArrayEquals(tree(network, null, arc01, arc12), workspace.minTree);
+		assertArrayEquals(tree(network, null, arc01, arc02), workspace.maxTree);
 	}
 	
 	@DisplayName("Cyclic graph C3 with non-active arc")
@@ -134,10 +140,11 @@ public class GetTreesTest {
 		
 		Algorithm a = new Algorithm(network, null, 0, 0);
 		
-		var res = a.getTrees(bush);
+		Workspace workspace = new Workspace(network.nodes);
+		a.getTrees(bush, workspace);
 		
-		assertArrayEquals(new Arc[]{null, arc01, arc02}, res.first());
-		assertArrayEquals(new Arc[]{null, arc01, arc02}, res.second());
+		assertArrayEquals(tree(network, null, arc01, arc02), workspace.minTree);
+		assertArrayEquals(tree(network, null, arc01, arc02), workspace.maxTree);
 	}
 	
 	@DisplayName("Bull graph")
@@ -161,10 +168,11 @@ public class GetTreesTest {
 		
 		Algorithm a = new Algorithm(network, null, 0, 0);
 		
-		var res = a.getTrees(bush);
+		Workspace workspace = new Workspace(network.nodes);
+		a.getTrees(bush, workspace);
 		
-		assertArrayEquals(new Arc[]{null, arc01, arc12, arc13, arc34}, res.first());
-		assertArrayEquals(new Arc[]{null, arc01, arc12, arc23, arc34}, res.second());
+		assertArrayEquals(tree(network, null, arc01, arc12, arc13, arc34), workspace.minTree);
+		assertArrayEquals(tree(network, null, arc01, arc12, arc23, arc34), workspace.maxTree);
 	}
 	
 	@DisplayName("Graph with alternative max path")
@@ -195,10 +203,11 @@ public class GetTreesTest {
 		
 		Algorithm a = new Algorithm(network, null, 0, 0);
 		
-		var res = a.getTrees(bush);
+		Workspace workspace = new Workspace(network.nodes);
+		a.getTrees(bush, workspace);
 		
-		assertArrayEquals(new Arc[]{null, arc01, arc12, arc13, arc34, arc45, arc56}, res.first());
-		assertArrayEquals(new Arc[]{null, arc01, arc42, arc13, arc34, null, null}, res.second());
+		assertArrayEquals(tree(network, null, arc01, arc12, arc13, arc34, arc45, arc56), workspace.minTree);
+		assertArrayEquals(tree(network, null, arc01, arc42, arc13, arc34, null, null), workspace.maxTree);
 	}
 	
 	@DisplayName("Bush is not whole graph")
@@ -220,9 +229,10 @@ public class GetTreesTest {
 		
 		Algorithm a = new Algorithm(network, null, 0, 0);
 		
-		var res = a.getTrees(bush);
+		Workspace workspace = new Workspace(network.nodes);
+		a.getTrees(bush, workspace);
 		
-		assertArrayEquals(new Arc[]{null, arc01, arc12, null}, res.first());
-		assertArrayEquals(new Arc[]{null, arc01, arc12, null}, res.second());
+		assertArrayEquals(tree(network, null, arc01, arc12, null), workspace.minTree);
+		assertArrayEquals(tree(network, null, arc01, arc12, null), workspace.maxTree);
 	}
 }
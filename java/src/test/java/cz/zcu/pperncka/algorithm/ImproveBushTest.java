@@ -3,6 +3,7 @@ package cz.zcu.pperncka.algorithm;
 import cz.zcu.pperncka.data.Bush;
 import cz.zcu.pperncka.data.Network;
 import cz.zcu.pperncka.data.Network.Arc;
+import cz.zcu.pperncka.data.Workspace;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 
@@ -34,7 +35,7 @@ public class ImproveBushTest {
 		
 		Algorithm a = new Algorithm(network, null, 0, 0);
 		
-		a.improveBush(bush);
+		a.improveBush(bush, new Workspace(network.nodes));
 		
 		assertTrue(bush.arcExists(0));
 		assertTrue(bush.arcExists(1));
@@ -60,7 +61,7 @@ public class ImproveBushTest {
 		
 		Algorithm a = new Algorithm(network, null, 0, 0);
 		
-		a.improveBush(bush);
+		a.improveBush(bush, new Workspace(network.nodes));
 		
 		assertTrue(bush.arcExists(0));
 		assertTrue(bush.arcExists(1));
@@ -0,0 +1,84 @@
+package cz.zcu.pperncka.algorithm;
+
+import cz.zcu.pperncka.data.Matrix;
+import cz.zcu.pperncka.data.Network;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static cz.zcu.pperncka.Fixtures.square;
+import static cz.zcu.pperncka.Fixtures.squareMatrix;
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("reassign")
+public class ReassignTest {
+	
+	private static Matrix demandChange() {
+		Matrix change = new Matrix(4);
+		change.set(0, 1, -40);
+		change.set(0, 3, 30);
+		change.set(2, 0, 50);
+		change.set(1, 2, 70);
+		return change;
+	}
+	
+	@DisplayName("Flows satisfy changed demand")
+	@Test
+	void test1() {
+		Network network = square();
+		Matrix m = squareMatrix();
+		Algorithm a = new Algorithm(network, m, 0, 1);
+		a.start();
+		a.reassign(demandChange());
+		
+		assertEquals(60, m.get(0, 1));
+		assertEquals(70, m.get(1, 2));
+		
+		// bilance každého uzlu odpovídá poptávce
+		double[] balance = new double[network.nodes];
+		for (Network.Arc arc : network.getArcs()) {
+			balance[arc.endNode] += arc.getCurrentFlow();
+			balance[arc.startNode] -= arc.getCurrentFlow();
+		}
+		for (int i = 0; i < m.n; i++)
+			for (int j = 0; j < m.n; j++) {
+				balance[j] -= m.get(i, j);
+				balance[i] += m.get(i, j);
+			}
+		for (int node = 0; node < network.nodes; node++)
+			assertEquals(0, balance[node], 1e-9, "node " + node);
+	}
+	
+	@DisplayName("Same equilibrium as from all-or-nothing bushes")
+	@Test
+	void test2() {
+		Network network = square();
+		Algorithm a = new Algorithm(network, squareMatrix(), 0, 30);
+		a.start();
+		a.reassign(demandChange());
+		
+		Network changed = square();
+		Matrix m = squareMatrix();
+		Matrix change = demandChange();
+		for (int i = 0; i < m.n; i++)
+			for (int j = 0; j < m.n; j++)
+				m.set(i, j, m.get(i, j) + change.get(i, j));
+		new Algorithm(changed, m, 0, 100).start();
+		
+		for (int i = 0; i < network.getArcs().length; i++)
+			assertEquals(changed.getFlow(i), network.getFlow(i), 1e-3, "arc " + i);
+	}
+	
+	@DisplayName("Negative demand is rejected")
+	@Test
+	void test3() {
+		Network network = square();
+		Matrix m = squareMatrix();
+		Algorithm a = new Algorithm(network, m, 0, 1);
+		a.start();
+		
+		Matrix change = new Matrix(4);
+		change.set(2, 1, -81);
+		assertThrows(IllegalArgumentException.class, () -> a.reassign(change));
+		assertEquals(80, m.get(2, 1));
+	}
+}
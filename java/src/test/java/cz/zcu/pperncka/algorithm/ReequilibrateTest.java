@@ -0,0 +1,68 @@
+package cz.zcu.pperncka.algorithm;
+
+import cz.zcu.pperncka.data.Network;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static cz.zcu.pperncka.Fixtures.square;
+import static cz.zcu.pperncka.Fixtures.squareMatrix;
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("reequilibrate")
+public class ReequilibrateTest {
+	
+	@DisplayName("Flow leaves closed arc")
+	@Test
+	void test1() {
+		Network network = square();
+		Algorithm a = new Algorithm(network, squareMatrix(), 0, 30);
+		a.start();
+		assertTrue(network.getFlow(0) > 0);
+		
+		network.closeArc(0);
+		a.reequilibrate(new int[]{0});
+		
+		assertEquals(0, network.getFlow(0), 1e-6);
+		// tok z 0 do 1 vede jinudy
+		assertEquals(100 + 150, network.getFlow(1) + network.getFlow(2), 1e-6);
+	}
+	
+	@DisplayName("Same equilibrium as from all-or-nothing bushes")
+	@Test
+	void test2() {
+		Network network = square();
+		Algorithm a = new Algorithm(network, squareMatrix(), 0, 30);
+		a.start();
+		
+		Network changed = square();
+		int[] arcs = {1, 6};
+		for (int arc : arcs) {
+			network.setArcParameters(arc, 40, 2);
+			changed.setArcParameters(arc, 40, 2);
+		}
+		a.reequilibrate(arcs);
+		new Algorithm(changed, squareMatrix(), 0, 100).start();
+		
+		for (int i = 0; i < network.getArcs().length; i++)
+			assertEquals(changed.getFlow(i), network.getFlow(i), 1e-3, "arc " + i);
+	}
+	
+	@DisplayName("Parallel algorithm can be started again after closing an arc")
+	@Test
+	void test3() {
+		for (int mode = 0; mode < 3; mode++) {
+			Network network = square();
+			ParallelAlgorithm a = new ParallelAlgorithm(network, squareMatrix(), 0, 30, 2);
+			a.setConcurrentShifting(mode == 1);
+			a.setWorkStealing(mode == 2);
+			a.start();
+			assertTrue(network.getFlow(0) > 0);
+			
+			network.closeArc(0);
+			a.reequilibrate(new int[]{0});
+			
+			assertEquals(0, network.getFlow(0), 1e-6, "mode " + mode);
+			assertEquals(100 + 150, network.getFlow(1) + network.getFlow(2), 1e-6, "mode " + mode);
+		}
+	}
+}
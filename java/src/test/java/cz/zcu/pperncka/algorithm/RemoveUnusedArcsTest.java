@@ -14,7 +14,7 @@ import static org.junit.jupiter.api.Assertions.*;
 @DisplayName("removeUnusedArcs")
 public class RemoveUnusedArcsTest {
 	
-	@DisplayName("All arcs with positive flow, empty minTree")
+	@DisplayName("All arcs with positive flow, no minTree")
 	@Test
 	void test1() {
 		var arc01 = new Arc(0, 1, 1, 1, 1, 0);
@@ -32,7 +32,7 @@ public class RemoveUnusedArcsTest {
 			bush.addFlow(i, 1);
 		}
 		
-		var minTree = new Arc[0];
+		var minTree = new int[]{-1, -1, -1, -1};
 		Algorithm a = new Algorithm(network, null, 0, 0);
 		
 		a.removeUnusedArcs(bush, minTree);
@@ -43,7 +43,7 @@ public class RemoveUnusedArcsTest {
 		assertTrue(bush.arcExists(3));
 	}
 	
-	@DisplayName("All arcs with no flow, empty minTree")
+	@DisplayName("All arcs with no flow, no minTree")
 	@Test
 	void test2() {
 		var arc01 = new Arc(0, 1, 1, 1, 1, 0);
@@ -59,7 +59,7 @@ public class RemoveUnusedArcsTest {
 		for (int i = 0; i < 4; i++)
 			bush.addArc(i);
 		
-		var minTree = new Arc[0];
+		var minTree = new int[]{-1, -1, -1, -1};
 		Algorithm a = new Algorithm(network, null, 0, 0);
 		
 		a.removeUnusedArcs(bush, minTree);
@@ -70,7 +70,7 @@ public class RemoveUnusedArcsTest {
 		assertFalse(bush.arcExists(3));
 	}
 	
-	@DisplayName("All arcs with no flow, all arcs in minTree")
+	@DisplayName("All arcs with no flow, arcs of minTree are spared")
 	@Test
 	void test3() {
 		var arc01 = new Arc(0, 1, 1, 1, 1, 0);
@@ -86,7 +86,7 @@ public class RemoveUnusedArcsTest {
 		for (int i = 0; i < 4; i++)
 			bush.addArc(i);
 		
-		var minTree = network.getArcs();
+		var minTree = new int[]{-1, 0, 1, 2};
 		Algorithm a = new Algorithm(network, null, 0, 0);
 		
 		a.removeUnusedArcs(bush, minTree);
@@ -94,10 +94,10 @@ public class RemoveUnusedArcsTest {
 		assertTrue(bush.arcExists(0));
 		assertTrue(bush.arcExists(1));
 		assertTrue(bush.arcExists(2));
-		assertTrue(bush.arcExists(3));
+		assertFalse(bush.arcExists(3));
 	}
 	
-	@DisplayName("One arc with no flow, empty minTree")
+	@DisplayName("One arc with no flow, no minTree")
 	@Test
 	void test4() {
 		var arc01 = new Arc(0, 1, 1, 1, 1, 0);
@@ -116,7 +116,7 @@ public class RemoveUnusedArcsTest {
 		}
 		bush.addFlow(3, -1);
 		
-		var minTree = new Arc[0];
+		var minTree = new int[]{-1, -1, -1, -1};
 		Algorithm a = new Algorithm(network, null, 0, 0);
 		
 		a.removeUnusedArcs(bush, minTree);
@@ -3,26 +3,16 @@ package cz.zcu.pperncka.algorithm;
 import cz.zcu.pperncka.data.Bush;
 import cz.zcu.pperncka.data.Network;
 import cz.zcu.pperncka.data.Network.Arc;
-import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 
-import java.util.List;
-
+import static cz.zcu.pperncka.Fixtures.network;
+import static cz.zcu.pperncka.Fixtures.tree;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 
-@SuppressWarnings("unchecked")
 @DisplayName("shiftFlows")
 public class ShiftFlowsTest {
 	
-	static Algorithm a;
-	
-	@BeforeAll
-	static void beforeAll() {
-		Network n = new Network(new List[0], 0);
-		a = new Algorithm(n, null, 0, 0);
-	}
-	
 	@DisplayName("Diamond graph - flows in network")
 	@Test
 	void test1() {
@@ -33,16 +23,19 @@ public class ShiftFlowsTest {
 		var arc13 = new Arc(1, 3, 0, 0, maxPathFlow, 2);
 		var arc23 = new Arc(2, 3, 0, 0, 		  0, 3);
 		
-		var minTree = new Arc[]{null, arc01, arc02, arc23};
-		var maxTree = new Arc[]{null, arc01, arc02, arc13};
+		Network network = network(arc01, arc02, arc13, arc23);
+		Algorithm a = new Algorithm(network, null, 0, 0);
+		
+		var minTree = tree(network, null, arc01, arc02, arc23);
+		var maxTree = tree(network, null, arc01, arc02, arc13);
 		
 		Bush b = new Bush(4, 0);
 		a.shiftFlows(minTree, maxTree, b, 3, 0, flowDelta);
 		
-		assertEquals(maxPathFlow - flowDelta, arc01.getCurrentFlow());
-		assertEquals(maxPathFlow - flowDelta, arc13.getCurrentFlow());
-		assertEquals(flowDelta, arc02.getCurrentFlow());
-		assertEquals(flowDelta, arc23.getCurrentFlow());
+		assertEquals(maxPathFlow - flowDelta, network.getFlow(arc01.index));
+		assertEquals(maxPathFlow - flowDelta, network.getFlow(arc13.index));
+		assertEquals(flowDelta, network.getFlow(arc02.index));
+		assertEquals(flowDelta, network.getFlow(arc23.index));
 	}
 	
 	@DisplayName("Diamond graph - flows in bush")
@@ -55,8 +48,11 @@ public class ShiftFlowsTest {
 		var arc13 = new Arc(1, 3, 0, 0, maxPathFlow, 2);
 		var arc23 = new Arc(2, 3, 0, 0, 		  0, 3);
 		
-		var minTree = new Arc[]{null, arc01, arc02, arc23};
-		var maxTree = new Arc[]{null, arc01, arc02, arc13};
+		Network network = network(arc01, arc02, arc13, arc23);
+		Algorithm a = new Algorithm(network, null, 0, 0);
+		
+		var minTree = tree(network, null, arc01, arc02, arc23);
+		var maxTree = tree(network, null, arc01, arc02, arc13);
 		
 		Bush bush = new Bush(4, 0);
 		bush.addFlow(0, maxPathFlow);
@@ -81,17 +77,20 @@ public class ShiftFlowsTest {
 		var arc24 = new Arc(2, 4, 0, 0, maxPathFlow, 3);
 		var arc34 = new Arc(3, 4, 0, 0, 		  0, 4);
 		
-		var minTree = new Arc[]{null, arc01, arc12, arc13, arc34};
-		var maxTree = new Arc[]{null, arc01, arc12, arc13, arc24};
+		Network network = network(arc01, arc12, arc13, arc24, arc34);
+		Algorithm a = new Algorithm(network, null, 0, 0);
+		
+		var minTree = tree(network, null, arc01, arc12, arc13, arc34);
+		var maxTree = tree(network, null, arc01, arc12, arc13, arc24);
 		
 		Bush b = new Bush(5, 0);
 		a.shiftFlows(minTree, maxTree, b, 4, 1, flowDelta);
 		
-		assertEquals(0, arc01.getCurrentFlow());
-		assertEquals(maxPathFlow - flowDelta, arc12.getCurrentFlow());
-		assertEquals(maxPathFlow - flowDelta, arc24.getCurrentFlow());
-		assertEquals(flowDelta, arc13.getCurrentFlow());
-		assertEquals(flowDelta, arc34.getCurrentFlow());
+		assertEquals(0, network.getFlow(arc01.index));
+		assertEquals(maxPathFlow - flowDelta, network.getFlow(arc12.index));
+		assertEquals(maxPathFlow - flowDelta, network.getFlow(arc24.index));
+		assertEquals(flowDelta, network.getFlow(arc13.index));
+		assertEquals(flowDelta, network.getFlow(arc34.index));
 	}
 	
 	@DisplayName("Diamond graph alt. - flows in bush")
@@ -105,8 +104,11 @@ public class ShiftFlowsTest {
 		var arc24 = new Arc(2, 4, 0, 0, maxPathFlow, 3);
 		var arc34 = new Arc(3, 4, 0, 0, 		  0, 4);
 		
-		var minTree = new Arc[]{null, arc01, arc12, arc13, arc34};
-		var maxTree = new Arc[]{null, arc01, arc12, arc13, arc24};
+		Network network = network(arc01, arc12, arc13, arc24, arc34);
+		Algorithm a = new Algorithm(network, null, 0, 0);
+		
+		var minTree = tree(network, null, arc01, arc12, arc13, arc34);
+		var maxTree = tree(network, null, arc01, arc12, arc13, arc24);
 		
 		Bush bush = new Bush(5, 0);
 		bush.addFlow(1, maxPathFlow);
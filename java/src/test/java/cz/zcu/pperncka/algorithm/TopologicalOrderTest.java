@@ -0,0 +1,132 @@
+package cz.zcu.pperncka.algorithm;
+
+import cz.zcu.pperncka.data.Bush;
+import cz.zcu.pperncka.data.Network;
+import cz.zcu.pperncka.data.Network.Arc;
+import cz.zcu.pperncka.data.Workspace;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SuppressWarnings("unchecked")
+@DisplayName("topologicalOrder")
+public class TopologicalOrderTest {
+	
+	@DisplayName("Bull graph")
+	@Test
+	void test1() {
+		var arc01 = new Arc(0, 1, 1, 1, 1, 0);
+		var arc12 = new Arc(1, 2, 1, 1, 1, 0);
+		var arc13 = new Arc(1, 3, 1, 1, 1, 0);
+		var arc23 = new Arc(2, 3, 1, 1, 1, 0);
+		var arc34 = new Arc(3, 4, 1, 1, 1, 0);
+		
+		var adjList = new List[]{List.of(arc01), List.of(arc12, arc13), List.of(arc23), List.of(arc34), List.of()};
+		Network network = new Network(adjList, 0);
+		network.updateCosts();
+		
+		Bush bush = new Bush(5, 0);
+		for (int i = 0; i < 5; i++)
+			bush.addArc(i);
+		
+		Algorithm a = new Algorithm(network, null, 0, 0);
+		
+		assertArrayEquals(new int[]{0, 1, 2, 3, 4}, a.topologicalOrder(bush));
+		assertNotNull(bush.getTopologicalOrder());
+	}
+	
+	@DisplayName("Bush is not whole graph")
+	@Test
+	void test2() {
+		var arc01 = new Arc(0, 1, 1, 1, 1, 0);
+		var arc12 = new Arc(1, 2, 1, 1, 1, 0);
+		var arc23 = new Arc(2, 3, 1, 1, 1, 0);
+		
+		var adjList = new List[]{List.of(arc01), List.of(arc12), List.of(arc23), List.of()};
+		Network network = new Network(adjList, 0);
+		network.updateCosts();
+		
+		Bush bush = new Bush(3, 0);
+		for (int i = 0; i < 2; i++)
+			bush.addArc(i);
+		
+		Algorithm a = new Algorithm(network, null, 0, 0);
+		
+		assertArrayEquals(new int[]{0, 1, 2}, a.topologicalOrder(bush));
+	}
+	
+	@DisplayName("Order is recomputed after improveBush")
+	@Test
+	void test3() {
+		//  0 -> 1 -> 3
+		//  ∨    ∨
+		//  2 -> 4
+		var arc01 = new Arc(0, 1, 1, 1, 1, 0);
+		var arc02 = new Arc(0, 2, 1, 5, 1, 0);
+		var arc13 = new Arc(1, 3, 1, 1, 1, 0);
+		var arc14 = new Arc(1, 4, 1, 1, 1, 0);
+		var arc24 = new Arc(2, 4, 1, 1, 1, 0);
+		
+		var adjList = new List[]{List.of(arc01, arc02), List.of(arc13, arc14), List.of(arc24), List.of(), List.of()};
+		Network network = new Network(adjList, 0);
+		network.updateCosts();
+		
+		Bush bush = new Bush(5, 0);
+		int[] arcsInBush = {0, 1, 2, 4};
+		for (int i : arcsInBush) {
+			bush.addArc(i);
+			bush.addFlow(i, 1);
+		}
+		
+		Algorithm a = new Algorithm(network, null, 0, 0);
+		
+		a.topologicalOrder(bush);
+		a.improveBush(bush, new Workspace(network.nodes));
+		
+		assertTrue(bush.arcExists(3));
+		
+		int[] order = bush.getTopologicalOrder();
+		assertNotNull(order);
+		assertEquals(5, order.length);
+		
+		int[] position = new int[5];
+		for (int i = 0; i < order.length; i++)
+			position[order[i]] = i;
+		
+		for (Arc arc : network.getArcs())
+			if (bush.arcExists(arc.index))
+				assertTrue(position[arc.startNode] < position[arc.endNode]);
+	}
+	
+	@DisplayName("Order is kept by removeUnusedArcs")
+	@Test
+	void test4() {
+		var arc01 = new Arc(0, 1, 1, 1, 1, 0);
+		var arc02 = new Arc(0, 2, 1, 1, 1, 0);
+		var arc12 = new Arc(1, 2, 1, 1, 1, 0);
+		
+		var adjList = new List[]{List.of(arc01, arc02), List.of(arc12), List.of()};
+		Network network = new Network(adjList, 0);
+		network.updateCosts();
+		
+		Bush bush = new Bush(3, 0);
+		for (int i = 0; i < 3; i++)
+			bush.addArc(i);
+		bush.addFlow(0, 1);
+		bush.addFlow(2, 1);
+		
+		Algorithm a = new Algorithm(network, null, 0, 0);
+		
+		int[] order = a.topologicalOrder(bush);
+		int[] minTree = network.minTree(0).second();
+		a.removeUnusedArcs(bush, minTree);
+		
+		assertSame(order, bush.getTopologicalOrder());
+		assertTrue(bush.arcExists(0));
+		assertTrue(bush.arcExists(1));
+		assertTrue(bush.arcExists(2));
+	}
+}
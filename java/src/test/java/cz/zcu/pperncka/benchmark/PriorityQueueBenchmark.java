@@ -0,0 +1,78 @@
+package cz.zcu.pperncka.benchmark;
+
+import cz.zcu.pperncka.data.Network;
+import cz.zcu.pperncka.data.PriorityQueue;
+import cz.zcu.pperncka.data.Workspace;
+import cz.zcu.pperncka.io.TNTPParser;
+
+import java.util.Locale;
+
+/**
+ * Benchmark comparing types of priority queue on shortest path
+ * search. For each given network and each type, min trees are
+ * searched from every zone of the network, first as a warmup,
+ * then measured.
+ * <p>
+ * Usage: {@code PriorityQueueBenchmark <network.tntp>... [repetitions]}
+ */
+public class PriorityQueueBenchmark {
+	
+	/**
+	 * Entry point of the benchmark.
+	 * @param args paths to networks and optionally number of repetitions
+	 */
+	public static void main(String[] args) {
+		int networks = args.length;
+		int repetitions = 5;
+		if (networks > 1 && args[networks - 1].matches("\\d+"))
+			repetitions = Integer.parseInt(args[--networks]);
+		
+		if (networks < 1) {
+			System.out.println("Usage: PriorityQueueBenchmark <network.tntp>... [repetitions]");
+			return;
+		}
+		
+		for (int i = 0; i < networks; i++) {
+			Network map = TNTPParser.parseNetwork(args[i]);
+			map.updateCosts();
+			Workspace workspace = new Workspace(map.nodes);
+			
+			System.out.println(args[i] + " - nodes: " + map.nodes + ", arcs: " + map.getArcs().length
+					+ ", zones: " + map.zones);
+			
+			for (PriorityQueue.Type type : PriorityQueue.Type.values()) {
+				map.setPriorityQueue(type);
+				
+				// zahřátí JIT
+				run(map, workspace, repetitions);
+				
+				long startTime = System.nanoTime();
+				double checksum = run(map, workspace, repetitions);
+				long endTime = System.nanoTime();
+				
+				System.out.printf(Locale.ROOT, "%-10s %10.2f ms (checksum %.6f)%n",
+						type, (endTime - startTime) / 1e6 / repetitions, checksum);
+			}
+		}
+	}
+	
+	/**
+	 * Searches min trees from every zone repeatedly.
+	 * @param map         network
+	 * @param workspace   workspace for searching min trees
+	 * @param repetitions number of repetitions
+	 * @return sum of distances to all reachable nodes, so the work is not optimized away
+	 */
+	private static double run(Network map, Workspace workspace, int repetitions) {
+		double sum = 0;
+		for (int r = 0; r < repetitions; r++)
+			for (int zone = 0; zone < map.zones; zone++) {
+				map.minTree(zone, workspace);
+				for (double d : workspace.minDistance)
+					if (d != Double.POSITIVE_INFINITY)
+						sum += d;
+			}
+		
+		return sum;
+	}
+}
@@ -0,0 +1,72 @@
+package cz.zcu.pperncka.data;
+
+import cz.zcu.pperncka.Fixtures;
+import cz.zcu.pperncka.data.Network.Arc;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static cz.zcu.pperncka.Fixtures.gridMatrix;
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("gap")
+public class GapTest {
+	
+	/** Grid network, first 4 nodes are zones, arcs have some flow. */
+	private static Network grid(int size) {
+		Network network = Fixtures.grid(size);
+		for (int i = 0; i < network.getArcs().length; i++)
+			network.setFlow(i, 5 * (i % 9));
+		network.updateCosts();
+		return network;
+	}
+	
+	@DisplayName("Parallel gap equals sequential gap")
+	@Test
+	void test1() {
+		Network network = grid(6);
+		Matrix odm = gridMatrix();
+		ExecutorService threadPool = Executors.newFixedThreadPool(3);
+		
+		double gap = network.gap(odm);
+		assertEquals(gap, network.gap(odm, threadPool, 3), 1e-9 * Math.abs(gap));
+		assertEquals(gap, network.gap(odm, threadPool, 1), 1e-9 * Math.abs(gap));
+		
+		threadPool.shutdown();
+	}
+	
+	@DisplayName("Parallel gap is deterministic")
+	@Test
+	void test2() {
+		Network network = grid(6);
+		Matrix odm = gridMatrix();
+		ExecutorService threadPool = Executors.newFixedThreadPool(4);
+		
+		double gap = network.gap(odm, threadPool, 4);
+		for (int i = 0; i < 10; i++)
+			assertEquals(gap, network.gap(odm, threadPool, 4));
+		
+		threadPool.shutdown();
+	}
+	
+	@DisplayName("Gap of snapshot is not affected by later changes")
+	@Test
+	void test3() {
+		Network network = grid(6);
+		Matrix odm = gridMatrix();
+		
+		double gap = network.gap(odm);
+		Network snapshot = network.snapshot(null);
+		assertEquals(gap, snapshot.gap(odm));
+		
+		for (Arc arc : network.getArcs())
+			arc.addFlow(arc.index % 7);
+		network.updateCosts();
+		
+		assertEquals(gap, snapshot.gap(odm));
+		assertSame(snapshot, network.snapshot(snapshot));
+		assertEquals(network.gap(odm), snapshot.gap(odm));
+	}
+}
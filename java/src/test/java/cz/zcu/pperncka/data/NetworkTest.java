@@ -0,0 +1,83 @@
+package cz.zcu.pperncka.data;
+
+import cz.zcu.pperncka.data.Network.Arc;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SuppressWarnings("unchecked")
+@DisplayName("Network")
+public class NetworkTest {
+	
+	//  0 -> 1 -> 2
+	//  \_________^
+	private static Network network() {
+		var arc01 = new Arc(0, 1, 10, 1, 10, 0);
+		var arc02 = new Arc(0, 2, 20, 5, 0, 0);
+		var arc12 = new Arc(1, 2, 5, 2, 10, 0);
+		
+		var adjList = new List[]{List.of(arc01, arc02), List.of(arc12), List.of()};
+		return new Network(adjList, 1);
+	}
+	
+	@DisplayName("Flows and costs by index are same as of arc objects")
+	@Test
+	void test1() {
+		Network network = network();
+		network.updateCosts();
+		
+		assertEquals(10, network.getFlow(0));
+		assertEquals(0, network.getFlow(1));
+		assertEquals(10, network.getFlow(2));
+		assertEquals(1 * 1.15, network.getCost(0), 1e-12);
+		assertEquals(5, network.getCost(1), 1e-12);
+		assertEquals(2 * (1 + 0.15 * 16), network.getCost(2), 1e-12);
+		
+		for (Arc arc : network.getArcs()) {
+			assertEquals(arc.getCurrentFlow(), network.getFlow(arc.index));
+			assertEquals(arc.getCost(), network.getCost(arc.index));
+			assertEquals(arc.startNode, network.getStartNode(arc.index));
+			assertEquals(arc.endNode, network.getEndNode(arc.index));
+		}
+	}
+	
+	@DisplayName("Cost by index is updated only by updateCost")
+	@Test
+	void test2() {
+		Network network = network();
+		network.updateCosts();
+		
+		network.setFlow(1, 20);
+		assertEquals(20, network.getArcs()[1].getCurrentFlow());
+		assertEquals(5, network.getCost(1), 1e-12);
+		
+		network.updateCost(1);
+		assertEquals(5 * 1.15, network.getCost(1), 1e-12);
+		assertEquals(network.getCost(1), network.getArcs()[1].getCost());
+		assertEquals(2 * (1 + 0.15 * 16), network.getCost(2), 1e-12);
+	}
+	
+	@DisplayName("Flow added by arc object is visible by index, cost after updateDirtyCosts")
+	@Test
+	void test3() {
+		Network network = network();
+		network.updateCosts();
+		
+		network.getArcs()[0].addFlow(-10);
+		assertEquals(0, network.getFlow(0));
+		assertEquals(1.15, network.getCost(0), 1e-12);
+		
+		network.updateDirtyCosts();
+		assertEquals(1, network.getCost(0), 1e-12);
+		
+		Network snapshot = network.snapshot(null);
+		network.getArcs()[0].addFlow(10);
+		network.updateDirtyCosts();
+		assertEquals(0, snapshot.getFlow(0));
+		assertEquals(1, snapshot.getCost(0), 1e-12);
+		assertEquals(10, network.getFlow(0));
+	}
+}
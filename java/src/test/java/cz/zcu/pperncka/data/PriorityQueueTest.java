@@ -0,0 +1,95 @@
+package cz.zcu.pperncka.data;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("PriorityQueue")
+public class PriorityQueueTest {
+	
+	@DisplayName("Elements are popped in order of priority")
+	@Test
+	void test1() {
+		double[] priorities = {5, 0.5, 3, 12, 0, 7.25, 3.5, 1};
+		double[] sorted = priorities.clone();
+		Arrays.sort(sorted);
+		
+		for (PriorityQueue.Type type : PriorityQueue.Type.values()) {
+			PriorityQueue pq = type.create(priorities.length);
+			for (int i = 0; i < priorities.length; i++)
+				pq.add(i, priorities[i]);
+			
+			for (double priority : sorted)
+				assertEquals(priority, priorities[pq.popMin()], type.name());
+			assertTrue(pq.isEmpty());
+		}
+	}
+	
+	@DisplayName("Decreasing priority")
+	@Test
+	void test2() {
+		for (PriorityQueue.Type type : PriorityQueue.Type.values()) {
+			PriorityQueue pq = type.create(4);
+			pq.add(0, 1);
+			pq.add(1, 10);
+			pq.add(2, 20);
+			
+			assertEquals(0, pq.popMin(), type.name());
+			pq.decreasePriority(2, 5);
+			pq.add(3, 7);
+			
+			assertEquals(2, pq.popMin(), type.name());
+			assertEquals(3, pq.popMin(), type.name());
+			assertEquals(1, pq.popMin(), type.name());
+			assertTrue(pq.isEmpty());
+		}
+	}
+	
+	@DisplayName("Random Dijkstra-like sequence of operations")
+	@Test
+	void test3() {
+		int size = 1000;
+		Random random = new Random(42);
+		
+		for (PriorityQueue.Type type : PriorityQueue.Type.values()) {
+			PriorityQueue pq = type.create(size);
+			double[] priority = new double[size];
+			boolean[] inQueue = new boolean[size];
+			boolean[] popped = new boolean[size];
+			double last = 0;
+			
+			pq.add(0, 0);
+			inQueue[0] = true;
+			while (!pq.isEmpty()) {
+				int min = pq.popMin();
+				assertTrue(priority[min] >= last, type.name());
+				for (int i = 0; i < size; i++)
+					if (inQueue[i] && !popped[i] && i != min)
+						assertTrue(priority[min] <= priority[i], type.name());
+				
+				last = priority[min];
+				popped[min] = true;
+				
+				for (int k = 0; k < 5; k++) {
+					int value = random.nextInt(size);
+					double newPriority = last + random.nextDouble() * 100;
+					if (popped[value])
+						continue;
+					
+					if (!inQueue[value]) {
+						inQueue[value] = true;
+						priority[value] = newPriority;
+						pq.add(value, newPriority);
+					} else if (newPriority < priority[value]) {
+						priority[value] = newPriority;
+						pq.decreasePriority(value, newPriority);
+					}
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,111 @@
+package cz.zcu.pperncka.data;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("SparseBush")
+public class SparseBushTest {
+	
+	@DisplayName("Arcs added in arbitrary order")
+	@Test
+	void test1() {
+		Bush bush = new SparseBush(100, 0);
+		int[] arcsInBush = {42, 7, 99, 0, 7, 13};
+		for (int i : arcsInBush)
+			bush.addArc(i);
+		
+		assertTrue(bush.arcExists(0));
+		assertTrue(bush.arcExists(7));
+		assertTrue(bush.arcExists(13));
+		assertTrue(bush.arcExists(42));
+		assertTrue(bush.arcExists(99));
+		assertFalse(bush.arcExists(1));
+		assertFalse(bush.arcExists(50));
+		
+		assertEquals(5, bush.size());
+		assertArrayEquals(new int[]{0, 7, 13, 42, 99}, new int[]{
+				bush.getArc(0), bush.getArc(1), bush.getArc(2), bush.getArc(3), bush.getArc(4)});
+		assertEquals(3, bush.positionOf(42));
+		assertEquals(3, bush.positionOf(14));
+		assertEquals(5, bush.positionOf(100));
+	}
+	
+	@DisplayName("Flows and removal of arcs")
+	@Test
+	void test2() {
+		Bush bush = new SparseBush(10, 0);
+		for (int i = 0; i < 10; i++)
+			bush.addArc(i);
+		bush.addFlow(3, 5);
+		bush.addFlow(8, 2);
+		
+		bush.removeArcsWithoutFlow();
+		
+		assertEquals(2, bush.size());
+		assertTrue(bush.arcExists(3));
+		assertTrue(bush.arcExists(8));
+		assertFalse(bush.arcExists(4));
+		assertEquals(5, bush.getArcFlow(3));
+		assertEquals(0, bush.getArcFlow(4));
+		
+		bush.removeArc(8);
+		assertFalse(bush.arcExists(8));
+		assertEquals(2, bush.getArcFlow(8));
+		
+		bush.addArc(8);
+		assertTrue(bush.arcExists(8));
+		assertEquals(2, bush.getArcFlow(8));
+	}
+	
+	@DisplayName("Flow on arc which is not in bush")
+	@Test
+	void test3() {
+		Bush bush = new SparseBush(10, 0);
+		bush.addFlow(4, 1);
+		
+		assertFalse(bush.arcExists(4));
+		assertEquals(1, bush.getArcFlow(4));
+		
+		bush.addArc(4);
+		assertTrue(bush.arcExists(4));
+		assertEquals(1, bush.size());
+	}
+	
+	@DisplayName("Adding new arc invalidates topological order")
+	@Test
+	void test4() {
+		Bush bush = new SparseBush(10, 0);
+		bush.addArc(1);
+		bush.setTopologicalOrder(new int[]{0, 1});
+		
+		bush.addArc(1);
+		bush.removeArc(1);
+		assertNotNull(bush.getTopologicalOrder());
+		
+		bush.addArc(1);
+		assertNull(bush.getTopologicalOrder());
+	}
+	
+	@DisplayName("Removal of arcs by position keeps positions until compaction")
+	@Test
+	void test5() {
+		Bush bush = new SparseBush(10, 0);
+		for (int i = 0; i < 4; i++)
+			bush.addArc(i);
+		bush.addFlow(2, 1);
+		
+		bush.removeArcAt(bush.positionOf(1));
+		bush.removeArcAt(bush.positionOf(2));
+		assertEquals(4, bush.size());
+		assertEquals(3, bush.getArc(3));
+		assertFalse(bush.arcExists(1));
+		assertFalse(bush.arcExists(2));
+		
+		bush.compact();
+		assertEquals(3, bush.size());
+		assertArrayEquals(new int[]{0, 2, 3}, new int[]{bush.getArc(0), bush.getArc(1), bush.getArc(2)});
+		assertEquals(1, bush.getArcFlow(2));
+	}
+}
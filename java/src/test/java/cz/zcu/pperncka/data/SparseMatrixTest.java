@@ -0,0 +1,57 @@
+package cz.zcu.pperncka.data;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("SparseMatrix")
+public class SparseMatrixTest {
+	
+	@DisplayName("Elements in any order are sorted, last duplicate is kept")
+	@Test
+	void test1() {
+		int[] rows = {2, 0, 2, 0, 2, 3};
+		int[] columns = {3, 1, 0, 1, 1, 2};
+		double[] values = {1, 2, 3, 4, 5, 6};
+		SparseMatrix m = SparseMatrix.fromElements(4, rows, columns, values, rows.length);
+		
+		assertEquals(4, m.get(0, 1));
+		assertEquals(0, m.get(1, 1));
+		assertEquals(3, m.get(2, 0));
+		assertEquals(5, m.get(2, 1));
+		assertEquals(1, m.get(2, 3));
+		assertEquals(6, m.get(3, 2));
+		
+		assertEquals(1, m.rowEnd(0) - m.rowStart(0));
+		assertFalse(m.hasNonzero(1));
+		assertEquals(3, m.rowEnd(2) - m.rowStart(2));
+		for (int k = m.rowStart(2) + 1; k < m.rowEnd(2); k++)
+			assertTrue(m.getColumn(k - 1) < m.getColumn(k));
+		assertEquals(4 + 3 + 5 + 1 + 6, m.sum());
+	}
+	
+	@DisplayName("Same elements as dense matrix after random sets")
+	@Test
+	void test2() {
+		int n = 20;
+		Random random = new Random(7);
+		Matrix dense = new Matrix(n);
+		SparseMatrix sparse = SparseMatrix.fromElements(n, new int[0], new int[0], new double[0], 0);
+		for (int k = 0; k < 300; k++) {
+			int i = random.nextInt(n);
+			int j = random.nextInt(n);
+			double value = random.nextInt(3) == 0 ? 0 : random.nextDouble();
+			dense.set(i, j, value);
+			sparse.set(i, j, value);
+		}
+		
+		for (int i = 0; i < n; i++) {
+			assertEquals(dense.hasNonzero(i), sparse.hasNonzero(i), "row " + i);
+			for (int j = 0; j < n; j++)
+				assertEquals(dense.get(i, j), sparse.get(i, j), "element " + i + ", " + j);
+		}
+	}
+}
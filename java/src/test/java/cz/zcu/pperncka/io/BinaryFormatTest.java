@@ -0,0 +1,86 @@
+package cz.zcu.pperncka.io;
+
+import cz.zcu.pperncka.algorithm.Algorithm;
+import cz.zcu.pperncka.data.MappedMatrix;
+import cz.zcu.pperncka.data.Matrix;
+import cz.zcu.pperncka.data.Network;
+import cz.zcu.pperncka.data.Network.Arc;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static cz.zcu.pperncka.Fixtures.grid;
+import static cz.zcu.pperncka.Fixtures.gridMatrix;
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("BinaryFormat")
+public class BinaryFormatTest {
+	
+	@DisplayName("Network and OD matrix are same after loading")
+	@Test
+	void test1() throws IOException {
+		Network network = grid(5);
+		Matrix odm = gridMatrix();
+		Path file = Files.createTempFile("network", ".bin");
+		try {
+			BinaryFormat.write(network, odm, file.toString());
+			assertTrue(BinaryFormat.isBinary(file.toString()));
+			
+			Network loaded = BinaryFormat.readNetwork(file.toString());
+			assertEquals(network.nodes, loaded.nodes);
+			assertEquals(network.zones, loaded.zones);
+			for (int node = 0; node < network.nodes; node++) {
+				assertEquals(network.firstArcOf(node), loaded.firstArcOf(node));
+				assertEquals(network.lastArcOf(node), loaded.lastArcOf(node));
+			}
+			Arc[] arcs = network.getArcs();
+			Arc[] loadedArcs = loaded.getArcs();
+			assertEquals(arcs.length, loadedArcs.length);
+			for (int i = 0; i < arcs.length; i++) {
+				assertEquals(arcs[i].startNode, loadedArcs[i].startNode);
+				assertEquals(arcs[i].endNode, loadedArcs[i].endNode);
+				assertEquals(arcs[i].getCapacity(), loadedArcs[i].getCapacity());
+				assertEquals(arcs[i].getFreeFlow(), loadedArcs[i].getFreeFlow());
+			}
+			
+			Matrix loadedOdm = BinaryFormat.readODMatrix(file.toString());
+			assertTrue(loadedOdm instanceof MappedMatrix);
+			assertFalse(loadedOdm.hasNonzero(2));
+			for (int i = 0; i < odm.n; i++)
+				for (int j = 0; j < odm.n; j++)
+					assertEquals(odm.get(i, j), loadedOdm.get(i, j));
+			
+			// změna se zapíše do kopie, soubor zůstává
+			loadedOdm.set(2, 1, 7);
+			loadedOdm.set(0, 1, 0);
+			assertEquals(7, loadedOdm.get(2, 1));
+			assertEquals(0, loadedOdm.get(0, 1));
+			assertEquals(odm.get(0, 3), loadedOdm.get(0, 3));
+			assertEquals(odm.get(0, 1), BinaryFormat.readODMatrix(file.toString()).get(0, 1));
+		} finally {
+			Files.deleteIfExists(file);
+		}
+	}
+	
+	@DisplayName("Algorithm ends with same flows on loaded input")
+	@Test
+	void test2() throws IOException {
+		Path file = Files.createTempFile("network", ".bin");
+		try {
+			Network network = grid(5);
+			BinaryFormat.write(network, gridMatrix(), file.toString());
+			new Algorithm(network, gridMatrix(), 0, 5).start();
+			
+			Network loaded = BinaryFormat.readNetwork(file.toString());
+			new Algorithm(loaded, BinaryFormat.readODMatrix(file.toString()), 0, 5).start();
+			
+			for (int i = 0; i < network.getArcs().length; i++)
+				assertEquals(network.getFlow(i), loaded.getFlow(i), "arc " + i);
+		} finally {
+			Files.deleteIfExists(file);
+		}
+	}
+}
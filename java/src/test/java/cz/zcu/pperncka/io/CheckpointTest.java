@@ -0,0 +1,114 @@
+package cz.zcu.pperncka.io;
+
+import cz.zcu.pperncka.algorithm.Algorithm;
+import cz.zcu.pperncka.data.Bush;
+import cz.zcu.pperncka.data.Matrix;
+import cz.zcu.pperncka.data.Network;
+import cz.zcu.pperncka.data.SparseBush;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static cz.zcu.pperncka.Fixtures.grid;
+import static cz.zcu.pperncka.Fixtures.gridMatrix;
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("Checkpoint")
+public class CheckpointTest {
+	
+	@DisplayName("Bushes and flows are same after reading")
+	@Test
+	void test1() throws IOException {
+		Network network = grid(5);
+		int arcs = network.getArcs().length;
+		Bush[] bushes = new Bush[network.zones];
+		for (int root = 0; root < bushes.length; root++) {
+			bushes[root] = root % 2 == 0 ? new Bush(arcs, root) : new SparseBush(arcs, root);
+			for (int i = root; i < arcs; i += 3) {
+				bushes[root].addArc(i);
+				bushes[root].addFlow(i, i * 0.1);
+			}
+			// tok na hraně, která není v keři
+			bushes[root].addFlow(1, 2.5);
+		}
+		for (int i = 0; i < arcs; i++)
+			network.setFlow(i, i / 3.0);
+		
+		Path file = Files.createTempFile("checkpoint", ".bin");
+		try {
+			// malé buffery, aby se keře a toky rozdělily mezi více z nich
+			List<ByteBuffer> data = Checkpoint.encode(network, bushes, 7, -123.5,
+					new ArrayList<>(List.of(ByteBuffer.allocate(16))), 64);
+			assertTrue(data.size() > 1);
+			Checkpoint.write(data, file.toString());
+			
+			Checkpoint sparse = Checkpoint.read(file.toString(), network, root -> new SparseBush(arcs, root));
+			Checkpoint dense = Checkpoint.read(file.toString(), network, root -> new Bush(arcs, root));
+			for (Checkpoint checkpoint : new Checkpoint[]{sparse, dense}) {
+				assertEquals(7, checkpoint.iteration);
+				assertEquals(-123.5, checkpoint.maxLb);
+				for (int i = 0; i < arcs; i++)
+					assertEquals(network.getFlow(i), checkpoint.flows[i]);
+				
+				for (Bush bush : bushes) {
+					Bush loaded = checkpoint.bushes[bush.root];
+					assertEquals(bush.root, loaded.root);
+					for (int i = 0; i < arcs; i++) {
+						assertEquals(bush.arcExists(i), loaded.arcExists(i), "arc " + i);
+						assertEquals(bush.getArcFlow(i), loaded.getArcFlow(i), "arc " + i);
+					}
+				}
+			}
+		} finally {
+			Files.deleteIfExists(file);
+		}
+	}
+	
+	@DisplayName("Resumed algorithm ends with same flows")
+	@Test
+	void test2() throws IOException {
+		Path file = Files.createTempFile("checkpoint", ".bin");
+		try {
+			Network network = grid(5);
+			Algorithm a = new Algorithm(network, gridMatrix(), 0, 3);
+			a.setCheckpoint(file.toString(), 2);
+			a.start();
+			
+			// checkpoint je po druhé iteraci, zbývá jedna
+			Network resumed = grid(5);
+			Algorithm b = new Algorithm(resumed, gridMatrix(), 0, 3);
+			b.setResume(file.toString());
+			b.start();
+			
+			for (int i = 0; i < network.getArcs().length; i++)
+				assertEquals(network.getFlow(i), resumed.getFlow(i), "arc " + i);
+		} finally {
+			Files.deleteIfExists(file);
+		}
+	}
+	
+	@DisplayName("Algorithm continues if checkpoint cannot be written")
+	@Test
+	void test3() throws IOException {
+		Path directory = Files.createTempDirectory("checkpoint");
+		try {
+			Network network = grid(5);
+			Algorithm a = new Algorithm(network, gridMatrix(), 0, 3);
+			a.setCheckpoint(directory.resolve("missing").resolve("checkpoint.bin").toString(), 1);
+			a.start();
+			
+			Network expected = grid(5);
+			new Algorithm(expected, gridMatrix(), 0, 3).start();
+			for (int i = 0; i < network.getArcs().length; i++)
+				assertEquals(expected.getFlow(i), network.getFlow(i), "arc " + i);
+		} finally {
+			Files.deleteIfExists(directory);
+		}
+	}
+}
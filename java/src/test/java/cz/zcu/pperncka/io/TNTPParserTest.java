@@ -0,0 +1,161 @@
+package cz.zcu.pperncka.io;
+
+import cz.zcu.pperncka.data.Matrix;
+import cz.zcu.pperncka.data.Network;
+import cz.zcu.pperncka.data.SparseMatrix;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+import java.util.Random;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("TNTPParser")
+public class TNTPParserTest {
+	
+	@DisplayName("Network with comments and irregular whitespaces")
+	@Test
+	void test1() throws IOException {
+		String text = "<NUMBER OF ZONES> 2\n" +
+				"<NUMBER OF NODES> 3 ~ uzly\n" +
+				"<FIRST THRU NODE> 1\n" +
+				"<NUMBER OF LINKS> 3\n" +
+				"<END OF METADATA>\n" +
+				"\n" +
+				"~\tInit node\tTerm node\tCapacity\tLength\tFree Flow Time\t;\n" +
+				"\t1\t2\t25900.20064\t6\t6\t0.15\t4\t0\t0\t1\t;\n" +
+				"   2 3 1.5e3 1 0 0.15 4 0 0 1 ;\r\n" +
+				"\t3\t1\t100\t1\t0.0123456789012345678\t0.15\t4\t0\t0\t1\n";
+		Path file = write(text);
+		try {
+			Network network = TNTPParser.parseNetwork(file.toString());
+			assertEquals(3, network.nodes);
+			assertEquals(2, network.zones);
+			
+			Network.Arc[] arcs = network.getArcs();
+			assertEquals(3, arcs.length);
+			assertEquals(0, arcs[0].startNode);
+			assertEquals(1, arcs[0].endNode);
+			assertEquals(25900.20064, arcs[0].getCapacity());
+			assertEquals(6, arcs[0].getFreeFlow());
+			assertEquals(1500, arcs[1].getCapacity());
+			assertEquals(.0001, arcs[1].getFreeFlow());
+			assertEquals(Double.parseDouble("0.0123456789012345678"), arcs[2].getFreeFlow());
+		} finally {
+			Files.deleteIfExists(file);
+		}
+	}
+	
+	@DisplayName("Parallel parsing gives same OD matrix as sequential")
+	@Test
+	void test2() throws IOException {
+		int zones = 57;
+		Random random = new Random(3);
+		double[] trips = new double[zones * zones];
+		StringBuilder text = new StringBuilder("<NUMBER OF ZONES> " + zones + "\n<END OF METADATA>\n\n");
+		for (int i = 0; i < zones; i++) {
+			if (i % 10 == 3)
+				continue;
+			
+			text.append("Origin \t").append(i + 1).append('\n');
+			for (int j = 0; j < zones; j++) {
+				int kind = random.nextInt(4);
+				double value = kind == 0 ? 0 : kind == 1 ? random.nextInt(100) : random.nextDouble() * 1000;
+				trips[i * zones + j] = value;
+				text.append(String.format(Locale.ROOT, "%5d :%s;", j + 1, value));
+				if (j % 5 == 4)
+					text.append('\n');
+			}
+			text.append("\n\n");
+		}
+		
+		Path file = write(text.toString());
+		try {
+			Matrix dense = TNTPParser.parseODMatrix(file.toString(), false, 1);
+			for (int i = 0; i < zones; i++)
+				for (int j = 0; j < zones; j++)
+					assertEquals(trips[i * zones + j], dense.get(i, j), "element " + i + ", " + j);
+			
+			for (int threads : new int[]{2, 3, 8})
+				for (boolean sparse : new boolean[]{false, true}) {
+					Matrix m = TNTPParser.parseODMatrix(file.toString(), sparse, threads);
+					assertEquals(sparse, m instanceof SparseMatrix);
+					for (int i = 0; i < zones; i++)
+						for (int j = 0; j < zones; j++)
+							assertEquals(dense.get(i, j), m.get(i, j), "element " + i + ", " + j);
+				}
+		} finally {
+			Files.deleteIfExists(file);
+		}
+	}
+	
+	@DisplayName("Compressed files give same network and OD matrix")
+	@Test
+	void test3() throws IOException {
+		StringBuilder network = new StringBuilder("<NUMBER OF ZONES> 3\n<NUMBER OF NODES> 400\n<END OF METADATA>\n");
+		for (int i = 0; i < 399; i++)
+			network.append('\t').append(i + 1).append('\t').append(i + 2).append('\t')
+					.append(100 + i).append("\t1\t").append(0.5 * i).append("\t0.15\t4\t0\t0\t1\t;\n");
+		
+		int zones = 300;
+		Random random = new Random(5);
+		StringBuilder odMatrix = new StringBuilder("<NUMBER OF ZONES> " + zones + "\n<END OF METADATA>\n");
+		for (int i = 0; i < zones; i++) {
+			odMatrix.append("Origin ").append(i + 1).append('\n');
+			for (int j = 0; j < zones; j++)
+				odMatrix.append(String.format(Locale.ROOT, "%5d : %.6f;", j + 1, random.nextDouble() * 100));
+			odMatrix.append('\n');
+		}
+		
+		Path networkFile = write(network.toString());
+		Path odMatrixFile = write(odMatrix.toString());
+		Path compressedNetwork = compress(network.toString());
+		Path compressedOdMatrix = compress(odMatrix.toString());
+		try {
+			assertTrue(TNTPParser.isCompressed(compressedNetwork.toString()));
+			Network.Arc[] arcs = TNTPParser.parseNetwork(networkFile.toString()).getArcs();
+			Network.Arc[] compressedArcs = TNTPParser.parseNetwork(compressedNetwork.toString()).getArcs();
+			assertEquals(arcs.length, compressedArcs.length);
+			for (int i = 0; i < arcs.length; i++) {
+				assertEquals(arcs[i].startNode, compressedArcs[i].startNode);
+				assertEquals(arcs[i].endNode, compressedArcs[i].endNode);
+				assertEquals(arcs[i].getCapacity(), compressedArcs[i].getCapacity());
+				assertEquals(arcs[i].getFreeFlow(), compressedArcs[i].getFreeFlow());
+			}
+			
+			Matrix m = TNTPParser.parseODMatrix(odMatrixFile.toString(), false, 1);
+			for (boolean sparse : new boolean[]{false, true}) {
+				Matrix compressed = TNTPParser.parseODMatrix(compressedOdMatrix.toString(), sparse, 4);
+				for (int i = 0; i < zones; i++)
+					for (int j = 0; j < zones; j++)
+						assertEquals(m.get(i, j), compressed.get(i, j), "element " + i + ", " + j);
+			}
+		} finally {
+			Files.deleteIfExists(networkFile);
+			Files.deleteIfExists(odMatrixFile);
+			Files.deleteIfExists(compressedNetwork);
+			Files.deleteIfExists(compressedOdMatrix);
+		}
+	}
+	
+	private static Path write(String text) throws IOException {
+		Path file = Files.createTempFile("tntp", ".tntp");
+		Files.writeString(file, text);
+		return file;
+	}
+	
+	private static Path compress(String text) throws IOException {
+		Path file = Files.createTempFile("tntp", ".tntp.gz");
+		try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(file))) {
+			out.write(text.getBytes(StandardCharsets.US_ASCII));
+		}
+		return file;
+	}
+}
@@ -0,0 +1,85 @@
+package cz.zcu.pperncka.io;
+
+import cz.zcu.pperncka.data.Network.Arc;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("Writer")
+public class WriterTest {
+	
+	@DisplayName("Doubles are formatted same as by String.format")
+	@Test
+	void test1() {
+		List<Double> values = new ArrayList<>(List.of(0.0, -0.0, 1.0, 0.1, 0.5, 1e-16, 5e-16, 4.9999999999999996e-16,
+				0.1234567890123455, 2.5e-15, 1e15, 9007199254740991.0, 1e300, -1e-300, Double.MIN_VALUE,
+				Double.MAX_VALUE, Double.NaN, Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY));
+		Random random = new Random(7);
+		for (int i = 0; i < 200000; i++) {
+			values.add(random.nextDouble() * Math.pow(10, random.nextInt(24) - 18));
+			values.add(random.nextInt(100000) / 1000.0 + random.nextInt(2) * 5e-16);
+			values.add(-Math.scalb(1.0, random.nextInt(120) - 60) * (1 + random.nextInt(8)));
+		}
+		
+		byte[] buffer = new byte[DoubleFormatter.MAX_LENGTH];
+		for (double value : values) {
+			int length = DoubleFormatter.format(value, buffer, 0);
+			assertEquals(String.format(Locale.ROOT, "%.15f", value),
+					new String(buffer, 0, length, StandardCharsets.ISO_8859_1), "value " + value);
+		}
+	}
+	
+	@DisplayName("Text, binary and compressed files contain flows and costs of arcs")
+	@Test
+	void test2() throws IOException {
+		Random random = new Random(11);
+		Arc[] arcs = new Arc[5000];
+		for (int i = 0; i < arcs.length; i++)
+			arcs[i] = new Arc(i % 97, (i * 31) % 89, 100 + i, 1 + i % 7, random.nextDouble() * 1e4, i);
+		
+		StringBuilder expected = new StringBuilder("From\tTo\tVolume\tCost\n");
+		for (Arc arc : arcs)
+			expected.append(arc.startNode + 1).append('\t').append(arc.endNode + 1).append('\t')
+					.append(String.format(Locale.ROOT, "%.15f", arc.getCurrentFlow())).append('\t')
+					.append(String.format(Locale.ROOT, "%.15f", arc.getCost())).append('\n');
+		
+		Path text = Files.createTempFile("flows", ".tntp");
+		Path compressed = Files.createTempFile("flows", ".tntp.gz");
+		Path binary = Files.createTempFile("flows", ".bin");
+		try {
+			Writer.writeArcs(arcs, text.toString());
+			assertEquals(expected.toString(), Files.readString(text));
+			
+			Writer.writeArcs(arcs, compressed.toString());
+			try (InputStream in = new GZIPInputStream(Files.newInputStream(compressed))) {
+				assertEquals(expected.toString(), new String(in.readAllBytes(), StandardCharsets.US_ASCII));
+			}
+			
+			Writer.writeArcs(arcs, binary.toString(), Writer.Format.BINARY);
+			ByteBuffer doubles = ByteBuffer.wrap(Files.readAllBytes(binary)).order(ByteOrder.LITTLE_ENDIAN);
+			assertEquals(2 * Double.BYTES * arcs.length, doubles.remaining());
+			for (Arc arc : arcs) {
+				assertEquals(arc.getCurrentFlow(), doubles.getDouble());
+				assertEquals(arc.getCost(), doubles.getDouble());
+			}
+		} finally {
+			Files.deleteIfExists(text);
+			Files.deleteIfExists(compressed);
+			Files.deleteIfExists(binary);
+		}
+	}
+}